@@ -7,29 +7,56 @@ import banking.behaviours.overdraft.IOverdraftBehavior;
 import banking.behaviours.overdraft.NoOverdraftFacility;
 import banking.behaviours.overdraft.OverdraftFacility;
 import banking.services.AccountStore;
+import banking.services.IdempotencyStore;
+import banking.services.archive.AccountArchive;
+import banking.services.fx.FxRateStore;
+import banking.services.reconciliation.StateTree;
+import banking.services.scheduling.HoldExpiryTimer;
+import banking.services.velocity.VelocityCounter;
+import banking.services.velocity.VelocityLimit;
+import banking.services.velocity.VelocityRules;
+import banking.services.numbering.IAccountNumberGenerator;
+import banking.services.numbering.UuidAccountNumberGenerator;
 import sun.awt.geom.AreaOp;
 
 import javax.security.auth.login.FailedLoginException;
+import java.io.IOException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Currency;
 import java.util.List;
-import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Bank account class, supports Savings and Current Accounts.
  */
 public class Account {
+	public static final Currency DEFAULT_CURRENCY = Currency.getInstance("GBP");
+
+	private static volatile IAccountNumberGenerator accountNumberGenerator = new UuidAccountNumberGenerator();
+
 	private Credentials credentials;
 	private AccountType accountType;
 	private IOverdraftBehavior overdraftBehavior;
 	private IInterestBehavior interestBehavior;
-	private UUID accountNumber;
+	private AccountNumber accountNumber;
+	private Currency currency;
 	private double balance;
 	private List<Payee> payees;
 	private Status accountStatus;
-
+	private long openedEpoch;
+	private long stateEpoch;
+	private SnapshotState snapshotState;
+	private long lastActivity;
+	private AccountArchive archive;
+	private long archiveGeneration;
+	private double heldAmount;
+	private int openHolds;
+	private VelocityCounter velocity;
+	private long stateHash;
 
 	public enum AccountType {
 		CURRENT,
@@ -46,13 +73,19 @@ public class Account {
 	 * Create an account with credentials
 	 *
 	 * @param credentials Account credentials
+	 * @param accountNumber Account number
+	 * @param currency Currency the account is held in
 	 */
-	private Account(Credentials credentials, AccountType type) {
+	private Account(Credentials credentials, AccountType type, AccountNumber accountNumber, Currency currency) {
 		accountType = type;    // Set account type
-		accountNumber = UUID.randomUUID();    // Generate random account number
+		this.accountNumber = accountNumber;
+		this.currency = currency;
 		balance = 0;    // Start the account off with a balance of zero
 		payees = new ArrayList<>();    // Initialize payee list
 		this.credentials = credentials;
+		openedEpoch = AccountStore.currentEpoch();
+		stateEpoch = openedEpoch;
+		lastActivity = System.currentTimeMillis();
 	}
 	/**
 	 * Open a new account, defaults to a current account.
@@ -74,36 +107,126 @@ public class Account {
 	 * @return new account
 	 */
 	public static Account open(Credentials credentials, AccountType type) {
-		Account account = new Account(credentials, type);
+		return open(credentials, type, DEFAULT_CURRENCY);
+	}
+
+	/**
+	 * Open a new account held in a currency
+	 *
+	 * @param credentials
+	 * @param type account type to open
+	 * @param currency currency of the account's balance
+	 * @return new account
+	 */
+	public static Account open(Credentials credentials, AccountType type, Currency currency) {
+		Account account = new Account(credentials, type, accountNumberGenerator.next(), currency);
 		account.accountStatus = Status.OPEN;
-		switch (type) {
+		account.initialiseBehaviours(0);
+		account.stateHash = account.computeStateHash();
+
+		AccountStore.add(account);
+		AccountStore.getStateTree().add(account.accountNumber, account.stateHash);
+
+		return account;
+	}
+
+	/**
+	 * Recreate an existing account, e.g. one read back from an archive or import.
+	 * The account is not added to the store.
+	 *
+	 * @param credentials
+	 * @param type
+	 * @param currency
+	 * @param accountNumber
+	 * @param status
+	 * @param balance balance excluding the overdraft
+	 * @param overdraftBalance overdraft balance, zero for accounts without an overdraft facility
+	 * @param payees
+	 * @param lastActivity time of the last customer activity in milliseconds
+	 * @return recreated account
+	 */
+	public static Account restore(Credentials credentials, AccountType type, Currency currency, AccountNumber accountNumber,
+								  Status status, double balance, double overdraftBalance, List<Payee> payees, long lastActivity) {
+		Account account = new Account(credentials, type, accountNumber, currency);
+		account.accountStatus = status;
+		account.balance = balance;
+		account.payees.addAll(payees);
+		account.lastActivity = lastActivity;
+		account.initialiseBehaviours(overdraftBalance);
+		account.stateHash = account.computeStateHash();
+
+		return account;
+	}
+
+	/**
+	 * Set up the overdraft and interest behaviours for the account type
+	 *
+	 * @param overdraftBalance starting overdraft balance
+	 */
+	private void initialiseBehaviours(double overdraftBalance) {
+		switch (accountType) {
 			case CURRENT:
 				// Current accounts have overdraft facility
-				account.overdraftBehavior = new OverdraftFacility();
-				account.interestBehavior = new NoInterestFacility();
+				overdraftBehavior = new OverdraftFacility(overdraftBalance);
+				interestBehavior = new NoInterestFacility();
 				break;
 			default:
 				// Other accounts don't have an overdraft facility
-				account.overdraftBehavior = new NoOverdraftFacility();
-				account.interestBehavior = new InterestFacility();
+				overdraftBehavior = new NoOverdraftFacility();
+				interestBehavior = new InterestFacility();
 		}
+	}
 
-		AccountStore.add(account);
-
-		return account;
+	/**
+	 * Set the generator used to number newly opened accounts, defaults to random UUIDs.
+	 *
+	 * @param generator account number generator
+	 */
+	public static void setAccountNumberGenerator(IAccountNumberGenerator generator) {
+		accountNumberGenerator = generator;
 	}
 
 	/**
-	 * Login to account using supplied credentials
+	 * Login to account using supplied credentials. The password was hashed when the
+	 * credentials were created, so throttling doesn't save that work, use
+	 * {@link #login(String, String)} for logins from untrusted callers.
 	 *
 	 * @param credentials
 	 * @return login result
 	 * @throws FailedLoginException
 	 */
 	public boolean login(Credentials credentials) throws FailedLoginException {
-		if (!credentials.validate(credentials)) {
+		if (!AccountStore.getLoginThrottle().tryAcquire(credentials.getUsername())) {
+			throw new LoginThrottledException();
+		}
+
+		return authenticate(credentials);
+	}
+
+	/**
+	 * Login to account using a username and password. Throttled attempts are
+	 * rejected without the password being hashed.
+	 *
+	 * @param username
+	 * @param password
+	 * @return login result
+	 * @throws FailedLoginException
+	 */
+	public boolean login(String username, String password) throws FailedLoginException {
+		if (!AccountStore.getLoginThrottle().tryAcquire(username)) {
+			throw new LoginThrottledException();
+		}
+
+		return authenticate(new Credentials(username, password));
+	}
+
+	private boolean authenticate(Credentials credentials) throws FailedLoginException {
+		if (!this.credentials.validate(credentials)) {
+			AccountStore.getLoginThrottle().recordFailure(credentials.getUsername());
 			throw new FailedLoginException();
 		}
+
+		AccountStore.getLoginThrottle().recordSuccess(credentials.getUsername());
 		return true;
 	}
 
@@ -140,10 +263,29 @@ public class Account {
 	 *
 	 * @return account number
 	 */
-	public UUID getAccountNumber() {
+	public AccountNumber getAccountNumber() {
 		return accountNumber;
 	}
 
+	/**
+	 * Returns the account number as a UUID, as {@link #getAccountNumber()} did before account
+	 * numbers had their own type. Compact account numbers have zero high bits.
+	 *
+	 * @return account number
+	 */
+	public UUID getAccountNumberUUID() {
+		return accountNumber.toUUID();
+	}
+
+	/**
+	 * Returns the currency the account is held in
+	 *
+	 * @return currency
+	 */
+	public Currency getCurrency() {
+		return currency;
+	}
+
 	/**
 	 * Returns the current account balance
 	 *
@@ -154,21 +296,78 @@ public class Account {
 	}
 
 	/**
-	 * NOTE: Doesn't account for multiple users and
-	 * concurrent access to accounts
+	 * Returns the account balance excluding the overdraft balance
+	 *
+	 * @return balance excluding overdraft
+	 */
+	public double getBalanceExcludingOverdraft() {
+		return balance;
+	}
+
+	/**
+	 * Returns the time of the last customer activity on the account
+	 *
+	 * @return time in milliseconds
+	 */
+	public long getLastActivity() {
+		return lastActivity;
+	}
+
+	/**
+	 * Deposit money into the account
 	 *
 	 * @param value
 	 */
-	public void deposit(double value) throws IllegalArgumentException {
-		if (value < 0) {
+	public synchronized void deposit(double value) throws IllegalArgumentException {
+		if (!isValidAmount(value)) {
 			throw new IllegalArgumentException("Deposit value must be positive number");
 		}
 
+		ensureLive();
+		preserveSnapshotState();
+		lastActivity = System.currentTimeMillis();
+
 		if (overdraftBehavior.getBalance() < 0) {
 			double remaining = overdraftBehavior.deposit(value);
 			balance += remaining;
 		}
 		balance += value;
+		updateStateHash();
+	}
+
+	/**
+	 * Deposit money into the account at most once per request key. Retrying
+	 * with the same key returns the outcome of the original request.
+	 *
+	 * @param requestKey client supplied key identifying the request
+	 * @param value
+	 * @return true if the deposit was applied, false if it had already been applied
+	 * @throws IllegalArgumentException if the amount is negative or not finite, or the key was used for a different request
+	 * @throws IllegalStateException if too many request keys are in use, nothing is deposited
+	 */
+	public boolean deposit(String requestKey, double value) throws IllegalArgumentException, IllegalStateException {
+		IdempotencyStore.Request request = new IdempotencyStore.Request(accountNumber, "deposit", null, value);
+		IdempotencyStore.Outcome previous = IdempotencyStore.begin(requestKey, request);
+		if (previous != null) {	// Repeated request, replay the original outcome
+			previous.rethrow(IllegalArgumentException.class);
+			return false;
+		}
+
+		boolean recorded = false;
+		try {
+			deposit(value);
+			IdempotencyStore.succeed(requestKey, request);
+			recorded = true;
+		} catch (IllegalArgumentException e) {
+			IdempotencyStore.fail(requestKey, request, e);
+			recorded = true;
+			throw e;
+		} finally {
+			if (!recorded) {
+				IdempotencyStore.abandon(requestKey);	// Unexpected failure, allow the request to be retried
+			}
+		}
+		return true;
 	}
 
 	/**
@@ -176,24 +375,196 @@ public class Account {
 	 *
 	 * @param value
 	 * @throws IllegalArgumentException
+	 * @throws VelocityLimitExceededException
 	 */
-	public void withdraw(double value) throws IllegalArgumentException, InsufficientFundsException {
-		if (value < 0) {
+	public synchronized void withdraw(double value) throws IllegalArgumentException, InsufficientFundsException {
+		if (!isValidAmount(value)) {
 			throw new IllegalArgumentException("Withdrawal amount must be a positive number");
 		}
 
+		ensureLive();
+		if (openHolds > 0 && value > getAvailableBalance()) {
+			throw new InsufficientFundsException("Insufficient funds available, %s is held", heldAmount);
+		}
+		long now = System.currentTimeMillis();
+		VelocityLimit[] limits = checkVelocity(value, now);
+
+		preserveSnapshotState();
+		lastActivity = now;
+		debit(value);
+		updateStateHash();
+		recordVelocity(value, limits, now);
+	}
+
+	/**
+	 * Take money out of the balance, using the overdraft when there's no balance left
+	 *
+	 * @param value
+	 * @throws InsufficientFundsException
+	 */
+	private void debit(double value) throws InsufficientFundsException {
 		if (balance <= 0) {
 			// We need to use overdraft to withdraw from account
 			if (overdraftBehavior.hasOverdraftFacility()) {
 				overdraftBehavior.withdraw(value);
 			} else {
-				throw new InsufficientFundsException(String.format("Insufficient funds available account balance is %s", getBalance()));
+				throw new InsufficientFundsException("Insufficient funds available account balance is %s", getBalance());
 			}
 		} else {
 			balance -= value;
 		}
 	}
 
+	/**
+	 * Check a withdrawal or payment against the velocity limits for the account type
+	 *
+	 * @param value
+	 * @param nowMillis
+	 * @return limits checked, or null if the account type has none
+	 * @throws VelocityLimitExceededException
+	 */
+	private VelocityLimit[] checkVelocity(double value, long nowMillis) throws VelocityLimitExceededException {
+		VelocityLimit[] limits = VelocityRules.getLimits(accountType);
+		if (limits != null) {
+			if (velocity == null) {
+				velocity = new VelocityCounter();	// Only accounts with limits pay for counters
+			}
+			velocity.check(value, limits, nowMillis);
+		}
+		return limits;
+	}
+
+	private void recordVelocity(double value, VelocityLimit[] limits, long nowMillis) {
+		if (limits != null) {
+			velocity.record(value, nowMillis);
+		}
+	}
+
+	/**
+	 * Returns the funds available to withdraw, including any unused overdraft, less funds on hold
+	 *
+	 * @return available balance
+	 */
+	public synchronized double getAvailableBalance() {
+		return balance + overdraftBehavior.getBalance() + overdraftBehavior.getLimit() - heldAmount;
+	}
+
+	/**
+	 * Returns the total of funds reserved by open holds
+	 *
+	 * @return held amount
+	 */
+	public synchronized double getHeldAmount() {
+		return heldAmount;
+	}
+
+	/**
+	 * Reserve funds, e.g. for a card authorisation. The funds stay available to
+	 * capture until the hold is released or it expires.
+	 *
+	 * @param value amount to reserve
+	 * @param duration how long the hold lasts
+	 * @param unit unit of the duration
+	 * @return hold, used to capture or release the funds
+	 * @throws IllegalArgumentException
+	 * @throws InsufficientFundsException if the amount is more than the available balance
+	 */
+	public synchronized Hold placeHold(double value, long duration, TimeUnit unit) throws IllegalArgumentException, InsufficientFundsException {
+		if (!isValidAmount(value)) {
+			throw new IllegalArgumentException("Hold amount must be a positive number");
+		}
+
+		ensureLive();
+		if (value > getAvailableBalance()) {
+			throw new InsufficientFundsException("Insufficient funds available account balance is %s", getAvailableBalance());
+		}
+
+		lastActivity = System.currentTimeMillis();
+		Hold hold = new Hold(this, value, lastActivity + unit.toMillis(duration));
+		heldAmount += value;
+		openHolds++;
+		HoldExpiryTimer.schedule(hold);
+		return hold;
+	}
+
+	/**
+	 * Take the full amount of a hold from the account
+	 *
+	 * @param hold
+	 * @throws IllegalArgumentException
+	 * @throws IllegalStateException if the hold is not open
+	 * @throws InsufficientFundsException
+	 */
+	public void capture(Hold hold) throws IllegalArgumentException, IllegalStateException, InsufficientFundsException {
+		capture(hold, hold.getAmount());
+	}
+
+	/**
+	 * Take part or all of a hold from the account, any amount not captured is released
+	 *
+	 * @param hold
+	 * @param value amount to take, no more than the amount held
+	 * @throws IllegalArgumentException
+	 * @throws IllegalStateException if the hold is not open
+	 * @throws InsufficientFundsException
+	 */
+	public synchronized void capture(Hold hold, double value) throws IllegalArgumentException, IllegalStateException, InsufficientFundsException {
+		if (!isValidAmount(value)) {
+			throw new IllegalArgumentException("Capture amount must be a positive number");
+		}
+		if (value > hold.getAmount()) {
+			throw new IllegalArgumentException("Capture amount exceeds the amount held");
+		}
+
+		ensureLive();
+		checkOpen(hold);
+		preserveSnapshotState();
+		lastActivity = System.currentTimeMillis();
+		debit(value);	// Funds were reserved, so this is covered by the available balance
+		updateStateHash();
+		closeHold(hold, Hold.State.CAPTURED);
+	}
+
+	/**
+	 * Release a hold without taking any funds
+	 *
+	 * @param hold
+	 * @throws IllegalStateException if the hold is not open
+	 */
+	public synchronized void release(Hold hold) throws IllegalStateException {
+		ensureLive();
+		checkOpen(hold);
+		lastActivity = System.currentTimeMillis();
+		closeHold(hold, Hold.State.RELEASED);
+	}
+
+	/**
+	 * Release a hold which has reached its expiry time, called by the hold expiry timer.
+	 *
+	 * @param hold
+	 */
+	public synchronized void expire(Hold hold) {
+		if (hold.getAccount() == this && hold.getState() == Hold.State.OPEN) {	// May have been captured or released meanwhile
+			closeHold(hold, Hold.State.EXPIRED);
+		}
+	}
+
+	private void checkOpen(Hold hold) throws IllegalStateException {
+		if (hold.getAccount() != this) {
+			throw new IllegalArgumentException("Hold was not placed on this account");
+		}
+		if (hold.getState() != Hold.State.OPEN) {
+			throw new IllegalStateException(String.format("Hold is %s", hold.getState()));
+		}
+	}
+
+	private void closeHold(Hold hold, Hold.State state) {
+		hold.close(state);
+		HoldExpiryTimer.cancel(hold);
+		openHolds--;
+		heldAmount = openHolds == 0 ? 0 : heldAmount - hold.getAmount();	// Reset to avoid rounding drift
+	}
+
 	/**
 	 * Register new payee
 	 *
@@ -201,8 +572,22 @@ public class Account {
 	 * @param accountNumber
 	 * @param payeeName
 	 */
-	public void registerPayee(String sortCode, String accountNumber, String payeeName) {
-		payees.add(new Payee(sortCode, accountNumber, payeeName));
+	public synchronized void registerPayee(String sortCode, String accountNumber, String payeeName) {
+		registerPayee(sortCode, accountNumber, payeeName, null);
+	}
+
+	/**
+	 * Register a payee paid in its own currency
+	 *
+	 * @param sortCode
+	 * @param accountNumber
+	 * @param payeeName
+	 * @param currency currency payments are made in, or null for the account's currency
+	 */
+	public synchronized void registerPayee(String sortCode, String accountNumber, String payeeName, Currency currency) {
+		ensureLive();
+		lastActivity = System.currentTimeMillis();
+		payees.add(new Payee(sortCode, accountNumber, payeeName, currency));
 	}
 
 	/**
@@ -215,45 +600,302 @@ public class Account {
 	}
 
 	/**
-	 * Make a payment from the account to a registered payee
+	 * Make a payment from the account to a registered payee. Payees with their own currency
+	 * are paid in that currency, the account is debited the converted amount.
 	 *
 	 * @param payeeName
-	 * @param value
-	 * @throws IllegalArgumentException
+	 * @param value amount in the payee's currency
+	 * @throws IllegalArgumentException if the amount is negative or not finite or there's no FX rate for the payee's currency
 	 * @throws PayeeNotFoundException
+	 * @throws InsufficientFundsException if the payment would spend funds reserved by holds
+	 * @throws VelocityLimitExceededException
 	 */
-	public void makePayment(String payeeName, double value) throws IllegalArgumentException, PayeeNotFoundException {
-		if (value < 0) {
+	public synchronized void makePayment(String payeeName, double value)
+			throws IllegalArgumentException, PayeeNotFoundException, InsufficientFundsException {
+		if (!isValidAmount(value)) {
 			throw new IllegalArgumentException("Payment amount must be a positive number");
 		}
-		// Find payee
-		Optional<Payee> payee = payees
-				.stream()
-				.filter(f -> f.getPayee().equals(payeeName))
-				.findFirst();
+		ensureLive();
+		// Find payee, looping rather than streaming so payments don't allocate
+		Payee payee = null;
+		for (int i = 0; i < payees.size() && payee == null; i++) {
+			if (payees.get(i).getPayee().equals(payeeName)) {
+				payee = payees.get(i);
+			}
+		}
 
-		if (payee.isPresent()) {    // Payee was found in the list with matching name
+		if (payee != null) {    // Payee was found in the list with matching name
 			// Make bank payment ...
 			// ...
 
-			balance -= value;
+			// Convert amounts in the payee's currency to the account's currency
+			Currency payeeCurrency = payee.getCurrency();
+			double debit = payeeCurrency == null ? value : FxRateStore.current().convert(value, payeeCurrency, currency);
+			if (openHolds > 0 && debit > getAvailableBalance()) {
+				throw new InsufficientFundsException("Insufficient funds available, %s is held", heldAmount);
+			}
+
+			long now = System.currentTimeMillis();
+			VelocityLimit[] limits = checkVelocity(debit, now);
+
+			preserveSnapshotState();
+			lastActivity = now;
+			balance -= debit;
+			updateStateHash();
+			recordVelocity(debit, limits, now);
 		} else {                    // Payee was not found in the list
-			throw new PayeeNotFoundException(String.format("%s not found in list of payees", payeeName));
+			throw new PayeeNotFoundException("%s not found in list of payees", payeeName);
 		}
 	}
 
-	public void calculateInterest() {
+	/**
+	 * Transfer money to another account, converting it to the other account's currency at
+	 * the current FX rate. Both accounts are locked in account number order, so transfers
+	 * in opposite directions can't deadlock. Book snapshots see the debit and credit together;
+	 * don't call this holding an account lock, snapshots waiting to begin would deadlock.
+	 *
+	 * @param to account to credit
+	 * @param value amount in this account's currency
+	 * @return amount credited, in the other account's currency
+	 * @throws IllegalArgumentException if the amount is negative or not finite, the accounts are the same or there's no FX rate
+	 * @throws IllegalStateException if the other account is an archived object that has since been restored, nothing is debited
+	 * @throws InsufficientFundsException
+	 * @throws VelocityLimitExceededException
+	 */
+	public double transfer(Account to, double value) throws IllegalArgumentException, InsufficientFundsException {
+		if (to == this) {
+			throw new IllegalArgumentException("Can't transfer to the same account");
+		}
+		if (!isValidAmount(value)) {
+			throw new IllegalArgumentException("Transfer amount must be a positive number");
+		}
+		double credit = FxRateStore.current().convert(value, currency, to.currency);
+
+		Account first = accountNumber.compareTo(to.accountNumber) < 0 ? this : to;
+		Account second = first == this ? to : this;
+		Lock epochLock = AccountStore.getEpochLock().readLock();
+		epochLock.lock();	// A snapshot can't begin between the debit and the credit
+		try {
+			synchronized (first) {
+				synchronized (second) {
+					to.ensureLive();	// Fails for a stale archived object before anything is debited
+					ensureLive();
+					long epoch = AccountStore.currentEpoch();	// Read once, both accounts preserve state for the same snapshot
+					preserveSnapshotState(epoch);
+					to.preserveSnapshotState(epoch);
+					withdraw(value);
+					to.deposit(credit);
+				}
+			}
+		} finally {
+			epochLock.unlock();
+		}
+		return credit;
+	}
+
+	/**
+	 * Make a payment to a registered payee at most once per request key. Retrying
+	 * with the same key returns the outcome of the original request.
+	 *
+	 * @param requestKey client supplied key identifying the request
+	 * @param payeeName
+	 * @param value
+	 * @return true if the payment was made, false if it had already been made
+	 * @throws IllegalArgumentException if the amount is negative or not finite, or the key was used for a different request
+	 * @throws IllegalStateException if too many request keys are in use, no payment is made
+	 * @throws PayeeNotFoundException
+	 * @throws InsufficientFundsException if the payment would spend funds reserved by holds, the
+	 * outcome isn't recorded so the request can be retried once the funds are released
+	 */
+	public boolean makePayment(String requestKey, String payeeName, double value)
+			throws IllegalArgumentException, PayeeNotFoundException, InsufficientFundsException {
+		IdempotencyStore.Request request = new IdempotencyStore.Request(accountNumber, "payment", payeeName, value);
+		IdempotencyStore.Outcome previous = IdempotencyStore.begin(requestKey, request);
+		if (previous != null) {	// Repeated request, replay the original outcome
+			previous.rethrow(PayeeNotFoundException.class);
+			return false;
+		}
+
+		boolean recorded = false;
+		try {
+			makePayment(payeeName, value);
+			IdempotencyStore.succeed(requestKey, request);
+			recorded = true;
+		} catch (FxRateUnavailableException e) {
+			throw e;	// Not recorded, the rate may be published before the request is retried
+		} catch (IllegalArgumentException | PayeeNotFoundException e) {
+			IdempotencyStore.fail(requestKey, request, e);
+			recorded = true;
+			throw e;
+		} finally {
+			if (!recorded) {
+				IdempotencyStore.abandon(requestKey);	// Unexpected failure, allow the request to be retried
+			}
+		}
+		return true;
+	}
+
+	public synchronized void calculateInterest() {
+		ensureLive();
+		preserveSnapshotState();
 		balance += interestBehavior.calculate(balance);
+		updateStateHash();
 	}
 
-	public void close() {
+	public synchronized void close() {
+		ensureLive();
 		if (balance != 0) { throw new IllegalStateException("Balance not 0"); }
 
+		preserveSnapshotState();
+		lastActivity = System.currentTimeMillis();
 		accountStatus = Status.CLOSED;
+		updateStateHash();
 	}
 
-	public void reactivate() {
+	/**
+	 * Reopen the account, an archived account is loaded back into the store.
+	 */
+	public synchronized void reactivate() {
+		ensureLive();
+		preserveSnapshotState();
+		lastActivity = System.currentTimeMillis();
 		accountStatus = Status.OPEN;
+		updateStateHash();
+	}
+
+	/**
+	 * Move the account to the archive if it's closed, or has had no activity since the cutoff.
+	 *
+	 * @param archive archive to write the account to
+	 * @param dormantBefore accounts with no activity since this time in milliseconds are dormant
+	 * @return true if the account was archived
+	 * @throws IOException if the account could not be written to the archive
+	 */
+	public synchronized boolean archiveIfDormant(AccountArchive archive, long dormantBefore) throws IOException {
+		if (this.archive != null || openHolds > 0 || (accountStatus != Status.CLOSED && lastActivity >= dormantBefore)) {
+			return false;
+		}
+
+		archiveGeneration = archive.add(this);	// Removes the account from the store
+		this.archive = archive;
+		return true;
+	}
+
+	/**
+	 * Returns true if the account has been moved to the archive and not used since.
+	 *
+	 * @return
+	 */
+	public synchronized boolean isArchived() {
+		return archive != null;
+	}
+
+	/**
+	 * Put an archived account back into the store before it's changed. Must be called holding the lock.
+	 */
+	private void ensureLive() {
+		if (archive != null) {
+			openedEpoch = archive.reattach(this, archiveGeneration);	// Treat as newly opened for snapshots in progress
+			stateEpoch = openedEpoch;
+			archive = null;
+		}
+	}
+
+	/**
+	 * Pass the account state as of a store snapshot to the visitor. Changes made
+	 * after the snapshot began are not visible.
+	 *
+	 * @param epoch snapshot epoch from {@link AccountStore#beginSnapshot()}
+	 * @param visitor
+	 * @return false if the account was opened after the snapshot began
+	 */
+	public synchronized boolean visitState(long epoch, StateVisitor visitor) {
+		if (archive != null || openedEpoch >= epoch) {	// Archived accounts are reported by the archive
+			return false;
+		}
+
+		if (stateEpoch >= epoch) {	// Changed since the snapshot began, use the preserved state
+			visitor.visit(this, snapshotState.balance, snapshotState.overdraftBalance, snapshotState.status);
+		} else {
+			visitor.visit(this, balance, overdraftBehavior.getBalance(), accountStatus);
+		}
+		return true;
+	}
+
+	/**
+	 * Preserve the current state before the first change made after a snapshot
+	 * began, so the snapshot can still read it. Must be called holding the lock.
+	 */
+	private void preserveSnapshotState() {
+		preserveSnapshotState(AccountStore.currentEpoch());
+	}
+
+	/**
+	 * Preserve the current state for a snapshot epoch read once for several accounts. Must be
+	 * called holding the lock, and the store's epoch lock so the epoch is still current.
+	 */
+	private void preserveSnapshotState(long epoch) {
+		if (stateEpoch != epoch) {
+			snapshotState = new SnapshotState(balance, overdraftBehavior.getBalance(), accountStatus);
+			stateEpoch = epoch;
+		}
+	}
+
+	/**
+	 * Returns a hash of the account's number, currency, status and balances, equal for
+	 * accounts in the same state in different stores
+	 *
+	 * @return state hash
+	 */
+	public synchronized long getStateHash() {
+		return stateHash;
+	}
+
+	private long computeStateHash() {
+		long hash = StateTree.mix(accountNumber.getHigh(), accountNumber.getLow());
+		hash = StateTree.mix(hash, Double.doubleToLongBits(balance + 0.0));	// Adding zero turns -0.0 into 0.0
+		hash = StateTree.mix(hash, Double.doubleToLongBits(overdraftBehavior.getBalance() + 0.0));
+		return StateTree.mix(hash, (long) currency.getNumericCode() << 8 | accountStatus.ordinal());
+	}
+
+	/**
+	 * Amounts must be finite and not negative, NaN fails every comparison so is rejected too
+	 */
+	private static boolean isValidAmount(double value) {
+		return value >= 0 && Double.isFinite(value);
+	}
+
+	/**
+	 * Rehash the account after a change, updating the store's state tree. Must be called holding the lock.
+	 */
+	private void updateStateHash() {
+		long updated = computeStateHash();
+		if (updated != stateHash) {
+			AccountStore.getStateTree().update(accountNumber, stateHash, updated);
+			stateHash = updated;
+		}
+	}
+
+	/**
+	 * Receives the state of an account as of a snapshot
+	 */
+	public interface StateVisitor {
+		void visit(Account account, double balance, double overdraftBalance, Status status);
+	}
+
+	/**
+	 * Account state preserved for a snapshot
+	 */
+	private static final class SnapshotState {
+		private final double balance;
+		private final double overdraftBalance;
+		private final Status status;
+
+		private SnapshotState(double balance, double overdraftBalance, Status status) {
+			this.balance = balance;
+			this.overdraftBalance = overdraftBalance;
+			this.status = status;
+		}
 	}
 
 	public static class Credentials {
@@ -265,10 +907,36 @@ public class Account {
 			this.password = generateHashedValue(password);    // Don't store raw password in object
 		}
 
+		private Credentials(String username) {
+			this.username = username;
+		}
+
+		/**
+		 * Recreate credentials from an already hashed password
+		 *
+		 * @param username
+		 * @param passwordHash hash from {@link #getPasswordHash()}
+		 * @return credentials
+		 */
+		public static Credentials fromHash(String username, String passwordHash) {
+			Credentials credentials = new Credentials(username);
+			credentials.password = passwordHash;
+			return credentials;
+		}
+
 		public String getUsername() {
 			return username;
 		}
 
+		/**
+		 * Returns the hashed password
+		 *
+		 * @return password hash
+		 */
+		public String getPasswordHash() {
+			return password;
+		}
+
 		/**
 		 * Hashes the value using an MD5 MessageDigest
 		 *
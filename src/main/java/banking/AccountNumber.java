@@ -0,0 +1,153 @@
+package banking;
+
+import java.util.UUID;
+
+/**
+ * Account number, either a random UUID or a compact, time sortable 64 bit identifier.
+ * Compact numbers are held as a UUID with zero high bits so both kinds can be
+ * converted to and from UUID.
+ */
+public final class AccountNumber implements Comparable<AccountNumber> {
+	private final long high;
+	private final long low;
+
+	private AccountNumber(long high, long low) {
+		this.high = high;
+		this.low = low;
+	}
+
+	/**
+	 * Create an account number from a UUID
+	 *
+	 * @param uuid
+	 * @return account number
+	 */
+	public static AccountNumber of(UUID uuid) {
+		return new AccountNumber(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+	}
+
+	/**
+	 * Create a compact account number
+	 *
+	 * @param id positive 64 bit identifier
+	 * @return account number
+	 */
+	public static AccountNumber of(long id) {
+		if (id <= 0) {
+			throw new IllegalArgumentException("Account number must be a positive number");
+		}
+		return new AccountNumber(0, id);
+	}
+
+	/**
+	 * Parse the external form produced by {@link #toString()}
+	 *
+	 * @param value UUID string or compact number followed by two check digits
+	 * @return account number
+	 * @throws IllegalArgumentException if the value is malformed or the check digits don't match
+	 */
+	public static AccountNumber parse(String value) throws IllegalArgumentException {
+		if (value.indexOf('-') >= 0) {
+			return of(UUID.fromString(value));
+		}
+
+		if (value.length() < 3 || value.length() > 21) {
+			throw new IllegalArgumentException(String.format("%s is not a valid account number", value));
+		}
+		long id;
+		int checkDigits;
+		try {
+			id = Long.parseLong(value.substring(0, value.length() - 2));
+			checkDigits = Integer.parseInt(value.substring(value.length() - 2));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(String.format("%s is not a valid account number", value));
+		}
+		if (id <= 0 || checkDigits != checkDigits(id)) {
+			throw new IllegalArgumentException(String.format("%s has invalid check digits", value));
+		}
+		return new AccountNumber(0, id);
+	}
+
+	/**
+	 * Calculates ISO 7064 MOD 97-10 check digits (as used by IBAN) for a compact number
+	 *
+	 * @param id compact identifier
+	 * @return check digits between 2 and 98
+	 */
+	static int checkDigits(long id) {
+		return (int) (98 - (id % 97) * 100 % 97);
+	}
+
+	/**
+	 * Returns true for compact 64 bit account numbers
+	 *
+	 * @return
+	 */
+	public boolean isCompact() {
+		return high == 0;
+	}
+
+	/**
+	 * Returns the compact 64 bit identifier
+	 *
+	 * @return identifier
+	 * @throws IllegalStateException if the account number is a UUID
+	 */
+	public long longValue() {
+		if (!isCompact()) {
+			throw new IllegalStateException("Account number is not compact");
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the account number as a UUID
+	 *
+	 * @return
+	 */
+	public UUID toUUID() {
+		return new UUID(high, low);
+	}
+
+	@Override
+	public int compareTo(AccountNumber other) {
+		int result = Long.compareUnsigned(high, other.high);
+		return result != 0 ? result : Long.compareUnsigned(low, other.low);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof AccountNumber)) return false;
+		AccountNumber other = (AccountNumber) o;
+		return high == other.high && low == other.low;
+	}
+
+	long getHigh() {
+		return high;
+	}
+
+	long getLow() {
+		return low;
+	}
+
+	@Override
+	public int hashCode() {
+		long h = high ^ low;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * Returns the external form, a UUID string or the compact number followed by two check digits
+	 *
+	 * @return
+	 */
+	@Override
+	public String toString() {
+		if (isCompact()) {
+			int check = checkDigits(low);
+			return check < 10 ? low + "0" + check : low + "" + check;
+		}
+		return toUUID().toString();
+	}
+}
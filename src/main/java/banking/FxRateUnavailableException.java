@@ -0,0 +1,11 @@
+package banking;
+
+/**
+ * Thrown when there's no FX rate for a currency. Rates are published from time to time,
+ * so unlike other invalid arguments the same request may succeed later.
+ */
+public class FxRateUnavailableException extends IllegalArgumentException {
+	public FxRateUnavailableException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,57 @@
+package banking;
+
+import banking.services.scheduling.TimingWheel;
+
+/**
+ * Funds reserved on an account, e.g. for a card authorisation, until
+ * they're captured, released or the hold expires.
+ */
+public class Hold extends TimingWheel.Entry {
+	private final Account account;
+	private final double amount;
+	private final long expiresAtMillis;
+	private volatile State state = State.OPEN;
+
+	public enum State {
+		OPEN,
+		CAPTURED,
+		RELEASED,
+		EXPIRED;
+	}
+
+	Hold(Account account, double amount, long expiresAtMillis) {
+		this.account = account;
+		this.amount = amount;
+		this.expiresAtMillis = expiresAtMillis;
+	}
+
+	public Account getAccount() {
+		return account;
+	}
+
+	/**
+	 * Returns the amount reserved
+	 *
+	 * @return
+	 */
+	public double getAmount() {
+		return amount;
+	}
+
+	/**
+	 * Returns the time the hold expires in milliseconds
+	 *
+	 * @return
+	 */
+	public long getExpiresAtMillis() {
+		return expiresAtMillis;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	void close(State state) {
+		this.state = state;
+	}
+}
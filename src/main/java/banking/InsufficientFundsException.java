@@ -1,7 +1,37 @@
 package banking;
 
 public class InsufficientFundsException extends Exception {
+	private final String format;
+	private final double amount;
+
 	public InsufficientFundsException(String message) {
-		super(message);
+		this(message, Double.NaN);
+	}
+
+	/**
+	 * Create an exception whose message is only formatted if it's read, so rejecting
+	 * an operation doesn't pay for formatting
+	 *
+	 * @param format message format with one %s for the amount
+	 * @param amount
+	 */
+	public InsufficientFundsException(String format, double amount) {
+		super(format);
+		this.format = format;
+		this.amount = amount;
+	}
+
+	@Override
+	public String getMessage() {
+		return Double.isNaN(amount) ? format : String.format(format, amount);
+	}
+
+	/**
+	 * Returns the amount the message refers to, e.g. the balance
+	 *
+	 * @return amount, or NaN if there isn't one
+	 */
+	public double getAmount() {
+		return amount;
 	}
 }
@@ -0,0 +1,19 @@
+package banking;
+
+import javax.security.auth.login.FailedLoginException;
+
+/**
+ * Thrown when a login is rejected by the login throttle. No stack trace is filled in,
+ * so rejecting an attempt costs one small allocation. A new exception is thrown each
+ * time, callers may add suppressed exceptions or a cause to the one they catch.
+ */
+public class LoginThrottledException extends FailedLoginException {
+	public LoginThrottledException() {
+		super("Too many login attempts, try again later");
+	}
+
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		return this;
+	}
+}
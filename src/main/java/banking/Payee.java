@@ -1,17 +1,50 @@
 package banking;
 
+import java.util.Currency;
+
 public class Payee {
 	private String sortCode;
 	private String accountNumber;
 	private String payee;
+	private Currency currency;
 
 	public Payee(String sortCode, String accountNumber, String payee) {
+		this(sortCode, accountNumber, payee, null);
+	}
+
+	/**
+	 * Create a payee paid in its own currency
+	 *
+	 * @param sortCode
+	 * @param accountNumber
+	 * @param payee
+	 * @param currency currency payments are made in, or null for the paying account's currency
+	 */
+	public Payee(String sortCode, String accountNumber, String payee, Currency currency) {
 		this.sortCode = sortCode;
 		this.accountNumber = accountNumber;
 		this.payee = payee;
+		this.currency = currency;
+	}
+
+	public String getSortCode() {
+		return sortCode;
+	}
+
+	public String getAccountNumber() {
+		return accountNumber;
 	}
 
 	public String getPayee() {
 		return payee;
 	}
+
+	/**
+	 * Returns the currency payments are made in
+	 *
+	 * @return currency, or null for the paying account's currency
+	 */
+	public Currency getCurrency() {
+		return currency;
+	}
 }
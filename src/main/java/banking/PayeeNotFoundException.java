@@ -1,7 +1,27 @@
 package banking;
 
 public class PayeeNotFoundException extends Exception {
+	private final String format;
+	private final String payeeName;
+
 	public PayeeNotFoundException(String message) {
-		super(message);
+		this(message, null);
+	}
+
+	/**
+	 * Create an exception whose message is only formatted if it's read
+	 *
+	 * @param format message format with one %s for the payee name
+	 * @param payeeName
+	 */
+	public PayeeNotFoundException(String format, String payeeName) {
+		super(format);
+		this.format = format;
+		this.payeeName = payeeName;
+	}
+
+	@Override
+	public String getMessage() {
+		return payeeName == null ? format : String.format(format, payeeName);
 	}
 }
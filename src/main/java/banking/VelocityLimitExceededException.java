@@ -0,0 +1,10 @@
+package banking;
+
+/**
+ * Thrown when a withdrawal or payment would take an account over one of its velocity limits.
+ */
+public class VelocityLimitExceededException extends RuntimeException {
+	public VelocityLimitExceededException(String message) {
+		super(message);
+	}
+}
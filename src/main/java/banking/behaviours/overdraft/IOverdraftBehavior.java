@@ -15,5 +15,7 @@ public interface IOverdraftBehavior {
 
 	double getBalance();
 
+	double getLimit();
+
 	double deposit(double value);
 }
@@ -25,6 +25,11 @@ public class NoOverdraftFacility implements IOverdraftBehavior {
 		return 0;
 	}
 
+	@Override
+	public double getLimit() {
+		return 0;
+	}
+
 	@Override
 	public double deposit(double value) {
 		return 0;
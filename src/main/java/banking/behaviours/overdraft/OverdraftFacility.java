@@ -12,13 +12,26 @@ public class OverdraftFacility implements IOverdraftBehavior {
 
 	private double balance = 0;
 
+	public OverdraftFacility() {
+	}
+
+	/**
+	 * Create an overdraft facility with an existing balance
+	 *
+	 * @param balance overdraft balance, zero or negative
+	 */
+	public OverdraftFacility(double balance) {
+		this.balance = balance;
+	}
+
 	@Override
 	public void deductFine(double withdrawalAmount) throws InsufficientFundsException {
-		if (withdrawalAmount * FINE_PERCENTAGE > OVERDRAFT_LIMIT) {
-			throw new InsufficientFundsException(String.format("Withdrawal would exceed your overdraft limit"));
+		double fine = withdrawalAmount * FINE_PERCENTAGE;
+		if (fine > OVERDRAFT_LIMIT) {
+			throw new InsufficientFundsException("Withdrawal would exceed your overdraft limit");
 		}
 
-		balance -= withdrawalAmount * FINE_PERCENTAGE;
+		balance -= fine;
 	}
 
 	@Override
@@ -29,7 +42,7 @@ public class OverdraftFacility implements IOverdraftBehavior {
 	@Override
 	public void withdraw(double value) throws InsufficientFundsException {
 		deductFine(value);	// Fine account holder
-		if (value > OVERDRAFT_LIMIT) throw new InsufficientFundsException(String.format("Withdrawal would exceed your overdraft limit"));
+		if (value > OVERDRAFT_LIMIT) throw new InsufficientFundsException("Withdrawal would exceed your overdraft limit");
 
 		balance -= value;
 	}
@@ -39,6 +52,11 @@ public class OverdraftFacility implements IOverdraftBehavior {
 		return balance;
 	}
 
+	@Override
+	public double getLimit() {
+		return OVERDRAFT_LIMIT;
+	}
+
 	@Override
 	public double deposit(double value) {
 		if (Math.abs(balance) < value) {
@@ -0,0 +1,363 @@
+package banking.client;
+
+import banking.Account;
+import banking.AccountNumber;
+import banking.InsufficientFundsException;
+import banking.PayeeNotFoundException;
+import banking.VelocityLimitExceededException;
+import banking.server.Protocol;
+
+import javax.security.auth.login.FailedLoginException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Client for {@link banking.server.BankServer}. The blocking methods send a request and
+ * wait for its response. The async methods only queue the request, so many can be sent
+ * in one write: call {@link #flush()} to send them, their futures complete as responses
+ * arrive. A client is safe to share between threads.
+ */
+public class BankClient implements Closeable {
+	private static final int BUFFER_BYTES = 4 * Protocol.MAX_FRAME_BYTES;
+
+	private final SocketChannel channel;
+	private final ByteBuffer out = ByteBuffer.allocate(BUFFER_BYTES);
+	private final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+	private final Thread reader;
+	private int nextRequestId;
+	private volatile IOException failure;
+
+	/**
+	 * Connect to a server
+	 *
+	 * @param address
+	 * @throws IOException
+	 */
+	public BankClient(InetSocketAddress address) throws IOException {
+		channel = SocketChannel.open(address);
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		reader = new Thread(this::readResponses, "bank-client-reader");
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	public AccountNumber open(String username, String password, Account.AccountType type, Currency currency) throws IOException {
+		return join(openAsync(username, password, type, currency));
+	}
+
+	public CompletableFuture<AccountNumber> openAsync(String username, String password, Account.AccountType type, Currency currency) throws IOException {
+		return send(Protocol.OPEN, request -> {
+			Protocol.putString(request, username);
+			Protocol.putString(request, password);
+			request.put((byte) type.ordinal());
+			Protocol.putString(request, currency.getCurrencyCode());
+		}, Protocol::getAccountNumber);
+	}
+
+	/**
+	 * Log in, allowing the user's accounts to be used on this connection
+	 *
+	 * @param username
+	 * @param password
+	 * @return the user's account numbers
+	 * @throws FailedLoginException if the credentials are wrong or the login was throttled
+	 * @throws IOException
+	 */
+	public List<AccountNumber> login(String username, String password) throws FailedLoginException, IOException {
+		try {
+			return join(loginAsync(username, password));
+		} catch (CompletionException e) {
+			throw rethrow(e, FailedLoginException.class);
+		}
+	}
+
+	public CompletableFuture<List<AccountNumber>> loginAsync(String username, String password) throws IOException {
+		return send(Protocol.LOGIN, request -> {
+			Protocol.putString(request, username);
+			Protocol.putString(request, password);
+		}, response -> {
+			int count = response.getShort() & 0xFFFF;
+			List<AccountNumber> accountNumbers = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				accountNumbers.add(Protocol.getAccountNumber(response));
+			}
+			return accountNumbers;
+		});
+	}
+
+	/**
+	 * Deposit into an account
+	 *
+	 * @return balance after the deposit
+	 */
+	public double deposit(AccountNumber accountNumber, double value) throws IOException {
+		return join(depositAsync(accountNumber, value));
+	}
+
+	public CompletableFuture<Double> depositAsync(AccountNumber accountNumber, double value) throws IOException {
+		return send(Protocol.DEPOSIT, request -> {
+			Protocol.putAccountNumber(request, accountNumber);
+			request.putDouble(value);
+		}, ByteBuffer::getDouble);
+	}
+
+	/**
+	 * Withdraw from an account
+	 *
+	 * @return balance after the withdrawal
+	 */
+	public double withdraw(AccountNumber accountNumber, double value) throws InsufficientFundsException, IOException {
+		try {
+			return join(withdrawAsync(accountNumber, value));
+		} catch (CompletionException e) {
+			throw rethrow(e, InsufficientFundsException.class);
+		}
+	}
+
+	public CompletableFuture<Double> withdrawAsync(AccountNumber accountNumber, double value) throws IOException {
+		return send(Protocol.WITHDRAW, request -> {
+			Protocol.putAccountNumber(request, accountNumber);
+			request.putDouble(value);
+		}, ByteBuffer::getDouble);
+	}
+
+	/**
+	 * Pay a registered payee
+	 *
+	 * @return balance after the payment
+	 */
+	public double makePayment(AccountNumber accountNumber, String payeeName, double value)
+			throws PayeeNotFoundException, InsufficientFundsException, IOException {
+		try {
+			return join(makePaymentAsync(accountNumber, payeeName, value));
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof InsufficientFundsException) {
+				throw (InsufficientFundsException) e.getCause();
+			}
+			throw rethrow(e, PayeeNotFoundException.class);
+		}
+	}
+
+	public CompletableFuture<Double> makePaymentAsync(AccountNumber accountNumber, String payeeName, double value) throws IOException {
+		return send(Protocol.PAYMENT, request -> {
+			Protocol.putAccountNumber(request, accountNumber);
+			Protocol.putString(request, payeeName);
+			request.putDouble(value);
+		}, ByteBuffer::getDouble);
+	}
+
+	/**
+	 * Returns the balance of an account
+	 *
+	 * @return balance including the overdraft
+	 */
+	public double getBalance(AccountNumber accountNumber) throws IOException {
+		return join(getBalanceAsync(accountNumber));
+	}
+
+	public CompletableFuture<Double> getBalanceAsync(AccountNumber accountNumber) throws IOException {
+		return send(Protocol.BALANCE, request -> Protocol.putAccountNumber(request, accountNumber), ByteBuffer::getDouble);
+	}
+
+	/**
+	 * Transfer between accounts, converting to the other account's currency
+	 *
+	 * @param from account logged in to on this connection
+	 * @param to any account
+	 * @param value amount in the currency of the account transferred from
+	 * @return amount credited
+	 */
+	public double transfer(AccountNumber from, AccountNumber to, double value) throws InsufficientFundsException, IOException {
+		try {
+			return join(transferAsync(from, to, value));
+		} catch (CompletionException e) {
+			throw rethrow(e, InsufficientFundsException.class);
+		}
+	}
+
+	public CompletableFuture<Double> transferAsync(AccountNumber from, AccountNumber to, double value) throws IOException {
+		return send(Protocol.TRANSFER, request -> {
+			Protocol.putAccountNumber(request, from);
+			Protocol.putAccountNumber(request, to);
+			request.putDouble(value);
+		}, ByteBuffer::getDouble);
+	}
+
+	/**
+	 * Send queued requests
+	 *
+	 * @throws IOException
+	 */
+	public void flush() throws IOException {
+		synchronized (out) {
+			out.flip();
+			while (out.hasRemaining()) {
+				channel.write(out);
+			}
+			out.clear();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+		try {
+			reader.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Queue a request, sending queued requests first if there isn't room
+	 */
+	private <T> CompletableFuture<T> send(byte opcode, Consumer<ByteBuffer> arguments, Function<ByteBuffer, T> result) throws IOException {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		synchronized (out) {
+			if (failure != null) {
+				throw failure;
+			}
+			if (out.remaining() < Protocol.MAX_FRAME_BYTES) {
+				flush();
+			}
+
+			int start = out.position();
+			int requestId = nextRequestId++;
+			out.position(start + Integer.BYTES);
+			out.putInt(requestId);
+			out.put(opcode);
+			try {
+				arguments.accept(out);
+			} catch (RuntimeException e) {
+				out.position(start);	// Drop the request
+				throw e;
+			}
+			if (out.position() - start > Protocol.MAX_FRAME_BYTES) {
+				out.position(start);
+				throw new IllegalArgumentException("Request is too large");
+			}
+			out.putInt(start, out.position() - start - Integer.BYTES);
+			pending.add(new Pending(requestId, future, result));	// In send order, as responses arrive
+		}
+		return future;
+	}
+
+	/**
+	 * Send the request and wait for its response, throwing the exception it failed with
+	 */
+	private <T> T join(CompletableFuture<T> future) throws IOException {
+		flush();
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;	// Checked banking exceptions, unwrapped by the caller
+		}
+	}
+
+	private static <X extends Exception> X rethrow(CompletionException e, Class<X> checkedType) {
+		if (checkedType.isInstance(e.getCause())) {
+			return checkedType.cast(e.getCause());
+		}
+		throw e;
+	}
+
+	private void readResponses() {
+		ByteBuffer in = ByteBuffer.allocate(BUFFER_BYTES);
+		try {
+			while (channel.read(in) >= 0) {
+				in.flip();
+				while (in.remaining() >= Integer.BYTES && in.remaining() >= Integer.BYTES + in.getInt(in.position())) {
+					int end = in.position() + Integer.BYTES + in.getInt();
+					int requestId = in.getInt();
+					byte status = in.get();
+					Pending request = pending.poll();
+					if (request == null || request.requestId != requestId) {
+						throw new IOException(String.format("Unexpected response to request %s", requestId));
+					}
+
+					int limit = in.limit();
+					in.limit(end);
+					request.complete(status, in);
+					in.limit(limit).position(end);
+				}
+				in.compact();
+			}
+			fail(new IOException("Connection closed by server"));
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	private void fail(IOException e) {
+		synchronized (out) {
+			failure = e;
+		}
+		Pending request;
+		while ((request = pending.poll()) != null) {
+			request.future.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Request waiting for its response
+	 */
+	private static final class Pending {
+		private final int requestId;
+		private final CompletableFuture<Object> future;
+		private final Function<ByteBuffer, ?> result;
+
+		@SuppressWarnings("unchecked")
+		private <T> Pending(int requestId, CompletableFuture<T> future, Function<ByteBuffer, T> result) {
+			this.requestId = requestId;
+			this.future = (CompletableFuture<Object>) future;
+			this.result = result;
+		}
+
+		private void complete(byte status, ByteBuffer response) {
+			if (status == Protocol.OK) {
+				future.complete(result.apply(response));
+				return;
+			}
+
+			String message = Protocol.getString(response);
+			switch (status) {
+				case Protocol.INSUFFICIENT_FUNDS:
+					future.completeExceptionally(new InsufficientFundsException(message));
+					break;
+				case Protocol.PAYEE_NOT_FOUND:
+					future.completeExceptionally(new PayeeNotFoundException(message));
+					break;
+				case Protocol.LOGIN_FAILED:
+					future.completeExceptionally(new FailedLoginException(message));
+					break;
+				case Protocol.LIMIT_EXCEEDED:
+					future.completeExceptionally(new VelocityLimitExceededException(message));
+					break;
+				case Protocol.INVALID_REQUEST:
+					future.completeExceptionally(new IllegalArgumentException(message));
+					break;
+				default:
+					future.completeExceptionally(new BankServerException(status, message));
+			}
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package banking.client;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the bank server refuses a request for a reason with no matching
+ * banking exception, e.g. the account isn't logged in to on the connection.
+ */
+public class BankServerException extends IOException {
+	private final byte status;
+
+	public BankServerException(byte status, String message) {
+		super(message);
+		this.status = status;
+	}
+
+	/**
+	 * Returns the response status, see {@link banking.server.Protocol}
+	 *
+	 * @return
+	 */
+	public byte getStatus() {
+		return status;
+	}
+}
@@ -0,0 +1,271 @@
+package banking.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves the account store over the {@link Protocol} binary protocol. Connections are
+ * shared between a fixed number of selector threads, each carrying out its connections'
+ * requests itself, so a request never waits for a thread hand-off. Connections over the
+ * limit are closed as soon as they're accepted. If accepting fails, e.g. when the process is
+ * out of file descriptors, the server stops accepting for {@link #ACCEPT_BACKOFF_MILLIS}.
+ */
+public class BankServer implements Closeable {
+	public static final int DEFAULT_PORT = 7070;
+	public static final int DEFAULT_MAX_CONNECTIONS = 10_000;
+	public static final long ACCEPT_BACKOFF_MILLIS = 100;
+
+	private final ServerSocketChannel serverChannel;
+	private final Reactor[] reactors;
+	private final int maxConnections;
+	private final AtomicInteger connections = new AtomicInteger();
+	private final SelectionKey acceptKey;
+	private int nextReactor;	// Only used by the first reactor, which accepts connections
+	private long acceptResumeMillis;	// Also only used by the first reactor, zero while accepting
+
+	/**
+	 * Create a server, call {@link #start()} to accept connections
+	 *
+	 * @param address address to listen on, port 0 for any free port
+	 * @param threads number of selector threads
+	 * @throws IOException if the address can't be bound
+	 */
+	public BankServer(InetSocketAddress address, int threads) throws IOException {
+		this(address, threads, DEFAULT_MAX_CONNECTIONS);
+	}
+
+	/**
+	 * Create a server, call {@link #start()} to accept connections
+	 *
+	 * @param address address to listen on, port 0 for any free port
+	 * @param threads number of selector threads
+	 * @param maxConnections maximum number of open connections
+	 * @throws IOException if the address can't be bound
+	 */
+	public BankServer(InetSocketAddress address, int threads, int maxConnections) throws IOException {
+		if (threads < 1 || maxConnections < 1) {
+			throw new IllegalArgumentException("Number of threads and connections must be positive");
+		}
+		this.maxConnections = maxConnections;
+
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.bind(address, 1024);
+		serverChannel.configureBlocking(false);
+		reactors = new Reactor[threads];
+		for (int i = 0; i < threads; i++) {
+			reactors[i] = new Reactor(i);
+		}
+		acceptKey = serverChannel.register(reactors[0].selector, SelectionKey.OP_ACCEPT);
+	}
+
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		BankServer server = new BankServer(new InetSocketAddress(port), threads);
+		server.start();
+		System.out.printf("Listening on port %d with %d threads%n", server.getPort(), threads);
+	}
+
+	/**
+	 * Start accepting connections
+	 */
+	public void start() {
+		for (Reactor reactor : reactors) {
+			reactor.thread.start();
+		}
+	}
+
+	/**
+	 * Returns the port the server is listening on
+	 *
+	 * @return
+	 */
+	public int getPort() {
+		return serverChannel.socket().getLocalPort();
+	}
+
+	/**
+	 * Returns the number of open connections
+	 *
+	 * @return
+	 */
+	public int getConnectionCount() {
+		return connections.get();
+	}
+
+	/**
+	 * Stop the server, closing every connection
+	 */
+	@Override
+	public void close() throws IOException {
+		for (Reactor reactor : reactors) {
+			reactor.running = false;
+			reactor.selector.wakeup();
+		}
+		for (Reactor reactor : reactors) {
+			try {
+				reactor.thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		serverChannel.close();
+	}
+
+	private void accept() {
+		while (true) {
+			SocketChannel channel;
+			try {
+				channel = serverChannel.accept();
+			} catch (IOException e) {
+				// e.g. out of file descriptors, the pending connection stays queued so stop selecting it for a while
+				System.err.printf("Failed to accept a connection, pausing for %sms: %s%n", ACCEPT_BACKOFF_MILLIS, e);
+				acceptKey.interestOps(0);
+				acceptResumeMillis = System.currentTimeMillis() + ACCEPT_BACKOFF_MILLIS;
+				return;
+			}
+			if (channel == null) {
+				return;
+			}
+
+			if (connections.incrementAndGet() > maxConnections) {
+				connections.decrementAndGet();
+				closeQuietly(channel);
+				continue;
+			}
+			try {
+				channel.configureBlocking(false);
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			} catch (IOException e) {
+				connections.decrementAndGet();
+				closeQuietly(channel);	// e.g. the client already reset the connection
+				continue;
+			}
+			Reactor reactor = reactors[nextReactor];
+			nextReactor = (nextReactor + 1) % reactors.length;	// Wraps before it can overflow
+			reactor.accepted.add(channel);
+			reactor.selector.wakeup();
+		}
+	}
+
+	private static void closeQuietly(SocketChannel channel) {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// Closing anyway
+		}
+	}
+
+	/**
+	 * Selector thread serving its share of the connections
+	 */
+	private class Reactor implements Runnable {
+		private final Selector selector;
+		private final Thread thread;
+		private final Queue<SocketChannel> accepted = new ConcurrentLinkedQueue<>();
+		private final ByteBuffer response = ByteBuffer.allocate(Protocol.MAX_FRAME_BYTES);
+		private volatile boolean running = true;
+
+		private Reactor(int index) throws IOException {
+			selector = Selector.open();
+			thread = new Thread(this, "bank-server-" + index);
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (running) {
+					selector.select(selectTimeout());
+					register();
+					resumeAccepting();
+
+					Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+					while (keys.hasNext()) {
+						SelectionKey key = keys.next();
+						keys.remove();
+						handle(key);
+					}
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			} finally {
+				for (SelectionKey key : selector.keys()) {
+					if (key.attachment() instanceof Connection) {
+						((Connection) key.attachment()).close();
+					}
+				}
+				try {
+					selector.close();
+				} catch (IOException e) {
+					// Closing anyway
+				}
+			}
+		}
+
+		/**
+		 * Returns how long the selector may block for, zero for as long as it takes
+		 */
+		private long selectTimeout() {
+			if (this != reactors[0] || acceptResumeMillis == 0) {
+				return 0;
+			}
+			return Math.max(1, acceptResumeMillis - System.currentTimeMillis());
+		}
+
+		/**
+		 * Select the server channel again once the backoff after a failed accept has passed
+		 */
+		private void resumeAccepting() {
+			if (this == reactors[0] && acceptResumeMillis != 0 && System.currentTimeMillis() >= acceptResumeMillis) {
+				acceptResumeMillis = 0;
+				acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+			}
+		}
+
+		private void register() {
+			SocketChannel channel;
+			while ((channel = accepted.poll()) != null) {
+				try {
+					SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+					key.attach(new Connection(channel, key, response, connections::decrementAndGet));
+				} catch (IOException e) {
+					connections.decrementAndGet();
+					closeQuietly(channel);
+				}
+			}
+		}
+
+		private void handle(SelectionKey key) {
+			if (!key.isValid()) {
+				return;
+			}
+			if (key.isAcceptable()) {
+				accept();
+				return;
+			}
+
+			Connection connection = (Connection) key.attachment();
+			try {
+				if (key.isReadable()) {
+					connection.read();
+				} else if (key.isWritable()) {
+					connection.write();
+				}
+			} catch (IOException | RuntimeException e) {
+				connection.close();	// Client went away or broke the protocol, other connections carry on
+			}
+		}
+	}
+}
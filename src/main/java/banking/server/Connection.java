@@ -0,0 +1,146 @@
+package banking.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A client connection served by one selector thread. Every complete request read is
+ * carried out in order and the responses written together, so a client pipelining
+ * requests gets one write per batch rather than per request. Buffers start small and
+ * grow as the client sends larger frames or more requests at once.
+ */
+class Connection {
+	static final int INITIAL_BUFFER_BYTES = 4096;
+	static final int MAXIMUM_BUFFER_BYTES = 4 * Protocol.MAX_FRAME_BYTES;
+	private static final int PENDING_OUTPUT_LIMIT = MAXIMUM_BUFFER_BYTES - Protocol.MAX_FRAME_BYTES;
+
+	private final SocketChannel channel;
+	private final SelectionKey key;
+	private final ByteBuffer response;
+	private final Runnable onClose;
+	private final RequestHandler handler = new RequestHandler();
+	private ByteBuffer in = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+	private ByteBuffer out = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+	private boolean closed;
+
+	/**
+	 * @param channel
+	 * @param key
+	 * @param response buffer of {@link Protocol#MAX_FRAME_BYTES} shared by the selector thread's connections
+	 * @param onClose called once when the connection is closed
+	 */
+	Connection(SocketChannel channel, SelectionKey key, ByteBuffer response, Runnable onClose) {
+		this.channel = channel;
+		this.key = key;
+		this.response = response;
+		this.onClose = onClose;
+	}
+
+	/**
+	 * Read what's available, carry out complete requests and write their responses
+	 *
+	 * @throws IOException if the connection failed or the client broke the protocol
+	 */
+	void read() throws IOException {
+		if (!in.hasRemaining() && in.capacity() < MAXIMUM_BUFFER_BYTES) {
+			in = grow(in, in.capacity() * 2);	// Client is sending more than fits, read more at once
+		}
+		if (channel.read(in) < 0) {
+			close();
+			return;
+		}
+		process();
+	}
+
+	/**
+	 * Write responses left over from a full socket, then carry on with waiting requests
+	 *
+	 * @throws IOException
+	 */
+	void write() throws IOException {
+		if (flush()) {
+			process();
+		}
+	}
+
+	private void process() throws IOException {
+		boolean blocked = false;
+		in.flip();
+		while (in.remaining() >= Integer.BYTES) {
+			int length = in.getInt(in.position());
+			if (length < Protocol.HEADER_BYTES - Integer.BYTES || length > Protocol.MAX_FRAME_BYTES) {
+				throw new IOException(String.format("Invalid frame length %s", length));
+			}
+			if (in.remaining() < Integer.BYTES + length) {
+				break;	// Wait for the rest of the frame
+			}
+			if (out.position() > PENDING_OUTPUT_LIMIT && !flush()) {
+				blocked = true;	// Client isn't reading its responses, stop until it does
+				break;
+			}
+
+			int end = in.position() + Integer.BYTES + length;
+			int limit = in.limit();
+			in.position(in.position() + Integer.BYTES).limit(end);
+			response.clear();
+			handler.handle(in, response);
+			in.limit(limit).position(end);
+
+			response.flip();
+			if (out.remaining() < response.remaining()) {
+				out = grow(out, Math.max(out.capacity() * 2, out.position() + response.remaining()));
+			}
+			out.put(response);
+		}
+		in.compact();
+		if (in.position() == in.capacity() && in.capacity() < MAXIMUM_BUFFER_BYTES) {
+			in = grow(in, in.capacity() * 2);	// Make room for the rest of a large frame
+		}
+		if (!blocked) {
+			flush();
+		}	// Otherwise stay waiting to write, requests already read are carried out once it can
+	}
+
+	/**
+	 * Write pending responses, waiting for the socket to be writable if they don't all fit
+	 *
+	 * @return true if everything was written
+	 */
+	private boolean flush() throws IOException {
+		out.flip();
+		if (out.hasRemaining()) {
+			channel.write(out);
+		}
+		boolean written = !out.hasRemaining();
+		out.compact();
+
+		key.interestOps(written ? SelectionKey.OP_READ : SelectionKey.OP_WRITE);
+		return written;
+	}
+
+	/**
+	 * Returns a larger buffer holding what's been put in the buffer so far
+	 */
+	private static ByteBuffer grow(ByteBuffer buffer, int capacity) {
+		ByteBuffer grown = ByteBuffer.allocate(Math.min(capacity, MAXIMUM_BUFFER_BYTES));
+		buffer.flip();
+		grown.put(buffer);
+		return grown;
+	}
+
+	void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		key.cancel();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// Already closed
+		}
+		onClose.run();
+	}
+}
@@ -0,0 +1,88 @@
+package banking.server;
+
+import banking.AccountNumber;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Binary protocol between {@link BankServer} and its clients. Every frame is an int length
+ * followed by that many bytes. A request is a request id, an opcode and the operation's
+ * arguments; its response is the same request id, a status and either the result or, for
+ * any status but {@link #OK}, an error message. Clients may send many requests without
+ * waiting, responses come back in the order the requests were sent on the connection.
+ *
+ * <pre>
+ * OPEN      username, password, type, currency  -> account number
+ * LOGIN     username, password                  -> count, account numbers
+ * DEPOSIT   account number, amount              -> balance
+ * WITHDRAW  account number, amount              -> balance
+ * PAYMENT   account number, payee name, amount  -> balance
+ * BALANCE   account number                      -> balance, available balance
+ * TRANSFER  from, to, amount                    -> amount credited
+ * </pre>
+ *
+ * Strings are an unsigned short length and UTF-8 bytes, account numbers two longs, amounts
+ * doubles, account types a byte ordinal and counts unsigned shorts. An account can only be
+ * used on a connection that opened it or logged in to it.
+ */
+public class Protocol {
+	public static final int MAX_FRAME_BYTES = 1 << 16;
+	public static final int HEADER_BYTES = Integer.BYTES + Integer.BYTES + Byte.BYTES;	// Length, request id, opcode or status
+
+	public static final byte OPEN = 1;
+	public static final byte LOGIN = 2;
+	public static final byte DEPOSIT = 3;
+	public static final byte WITHDRAW = 4;
+	public static final byte PAYMENT = 5;
+	public static final byte BALANCE = 6;
+	public static final byte TRANSFER = 7;
+
+	public static final byte OK = 0;
+	public static final byte INSUFFICIENT_FUNDS = 1;
+	public static final byte PAYEE_NOT_FOUND = 2;
+	public static final byte ACCOUNT_NOT_FOUND = 3;
+	public static final byte UNAUTHORISED = 4;
+	public static final byte LOGIN_FAILED = 5;
+	public static final byte INVALID_REQUEST = 6;
+	public static final byte LIMIT_EXCEEDED = 7;
+	public static final byte SERVER_ERROR = 8;
+
+	/**
+	 * Write a string
+	 *
+	 * @param buffer
+	 * @param value
+	 * @throws IllegalArgumentException if the string is too long
+	 */
+	public static void putString(ByteBuffer buffer, String value) throws IllegalArgumentException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > 0xFFFF) {
+			throw new IllegalArgumentException("String is too long");
+		}
+		buffer.putShort((short) bytes.length);
+		buffer.put(bytes);
+	}
+
+	public static String getString(ByteBuffer buffer) {
+		int length = buffer.getShort() & 0xFFFF;
+		if (length > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+		buffer.position(buffer.position() + length);
+		return value;
+	}
+
+	public static void putAccountNumber(ByteBuffer buffer, AccountNumber accountNumber) {
+		UUID uuid = accountNumber.toUUID();
+		buffer.putLong(uuid.getMostSignificantBits());
+		buffer.putLong(uuid.getLeastSignificantBits());
+	}
+
+	public static AccountNumber getAccountNumber(ByteBuffer buffer) {
+		return AccountNumber.of(new UUID(buffer.getLong(), buffer.getLong()));
+	}
+}
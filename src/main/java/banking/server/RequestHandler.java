@@ -0,0 +1,180 @@
+package banking.server;
+
+import banking.Account;
+import banking.AccountNumber;
+import banking.InsufficientFundsException;
+import banking.PayeeNotFoundException;
+import banking.VelocityLimitExceededException;
+import banking.services.AccountStore;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Currency;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Carries out requests for one connection, remembering the accounts it has opened or logged in to.
+ */
+class RequestHandler {
+	private static final Account.AccountType[] TYPES = Account.AccountType.values();
+
+	private final Set<AccountNumber> session = new HashSet<>();
+
+	/**
+	 * Carry out a request, writing the response frame
+	 *
+	 * @param request request id, opcode and arguments
+	 * @param response buffer with room for a maximum size frame
+	 */
+	void handle(ByteBuffer request, ByteBuffer response) {
+		int requestId = request.getInt();
+		byte opcode = request.get();
+
+		int start = response.position();
+		response.position(start + Protocol.HEADER_BYTES);
+		byte status;
+		try {
+			status = execute(opcode, request, response);
+		} catch (InsufficientFundsException e) {
+			status = fail(response, start, Protocol.INSUFFICIENT_FUNDS, e.getMessage());
+		} catch (PayeeNotFoundException e) {
+			status = fail(response, start, Protocol.PAYEE_NOT_FOUND, e.getMessage());
+		} catch (VelocityLimitExceededException e) {
+			status = fail(response, start, Protocol.LIMIT_EXCEEDED, e.getMessage());
+		} catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+			status = fail(response, start, Protocol.INVALID_REQUEST, "Malformed request");
+		} catch (IllegalArgumentException | IllegalStateException e) {
+			status = fail(response, start, Protocol.INVALID_REQUEST, e.getMessage());
+		} catch (RuntimeException e) {
+			status = fail(response, start, Protocol.SERVER_ERROR, e.toString());
+		}
+
+		response.putInt(start, response.position() - start - Integer.BYTES);
+		response.putInt(start + Integer.BYTES, requestId);
+		response.put(start + Integer.BYTES + Integer.BYTES, status);
+	}
+
+	/**
+	 * Replace any partial result with an error message
+	 */
+	private static byte fail(ByteBuffer response, int start, byte status, String message) {
+		response.position(start + Protocol.HEADER_BYTES);
+		Protocol.putString(response, message == null ? "" : truncate(message));
+		return status;
+	}
+
+	private static String truncate(String message) {
+		return message.length() > 1024 ? message.substring(0, 1024) : message;
+	}
+
+	private byte execute(byte opcode, ByteBuffer request, ByteBuffer response)
+			throws InsufficientFundsException, PayeeNotFoundException {
+		switch (opcode) {
+			case Protocol.OPEN: {
+				Account.Credentials credentials = new Account.Credentials(Protocol.getString(request), Protocol.getString(request));
+				Account.AccountType type = TYPES[request.get()];
+				Account account = Account.open(credentials, type, Currency.getInstance(Protocol.getString(request)));
+				session.add(account.getAccountNumber());
+				Protocol.putAccountNumber(response, account.getAccountNumber());
+				return Protocol.OK;
+			}
+			case Protocol.LOGIN: {
+				List<Account> accounts = AccountStore.getByUsername(Protocol.getString(request), Protocol.getString(request));
+				if (accounts.isEmpty()) {
+					return loginFailed(response);
+				}
+				int count = Math.min(accounts.size(), (Protocol.MAX_FRAME_BYTES - Protocol.HEADER_BYTES - Short.BYTES) / 16);
+				response.putShort((short) count);
+				for (int i = 0; i < count; i++) {
+					session.add(accounts.get(i).getAccountNumber());
+					Protocol.putAccountNumber(response, accounts.get(i).getAccountNumber());
+				}
+				return Protocol.OK;
+			}
+			case Protocol.DEPOSIT: {
+				Account account = sessionAccount(request);
+				if (account == null) {
+					return unauthorised(response);
+				}
+				account.deposit(getAmount(request));
+				response.putDouble(account.getBalance());
+				return Protocol.OK;
+			}
+			case Protocol.WITHDRAW: {
+				Account account = sessionAccount(request);
+				if (account == null) {
+					return unauthorised(response);
+				}
+				account.withdraw(getAmount(request));
+				response.putDouble(account.getBalance());
+				return Protocol.OK;
+			}
+			case Protocol.PAYMENT: {
+				Account account = sessionAccount(request);
+				if (account == null) {
+					return unauthorised(response);
+				}
+				account.makePayment(Protocol.getString(request), getAmount(request));
+				response.putDouble(account.getBalance());
+				return Protocol.OK;
+			}
+			case Protocol.BALANCE: {
+				Account account = sessionAccount(request);
+				if (account == null) {
+					return unauthorised(response);
+				}
+				synchronized (account) {	// Balances from the same moment
+					response.putDouble(account.getBalance());
+					response.putDouble(account.getAvailableBalance());
+				}
+				return Protocol.OK;
+			}
+			case Protocol.TRANSFER: {
+				Account from = sessionAccount(request);
+				if (from == null) {
+					return unauthorised(response);
+				}
+				Account to = AccountStore.getByAccountNumber(Protocol.getAccountNumber(request));
+				if (to == null) {
+					Protocol.putString(response, "Account to transfer to not found");
+					return Protocol.ACCOUNT_NOT_FOUND;
+				}
+				response.putDouble(from.transfer(to, getAmount(request)));
+				return Protocol.OK;
+			}
+			default:
+				throw new IllegalArgumentException(String.format("Unknown operation %s", opcode));
+		}
+	}
+
+	/**
+	 * Read an amount, refusing NaN, infinities, zero and negative amounts before they reach an account
+	 */
+	private static double getAmount(ByteBuffer request) {
+		double value = request.getDouble();
+		if (!(value > 0) || Double.isInfinite(value)) {
+			throw new IllegalArgumentException(String.format("Amount %s must be a positive number", value));
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the account if this connection may use it, otherwise null
+	 */
+	private Account sessionAccount(ByteBuffer request) {
+		AccountNumber accountNumber = Protocol.getAccountNumber(request);
+		return session.contains(accountNumber) ? AccountStore.getByAccountNumber(accountNumber) : null;
+	}
+
+	private static byte unauthorised(ByteBuffer response) {
+		Protocol.putString(response, "Account not opened or logged in to on this connection");
+		return Protocol.UNAUTHORISED;
+	}
+
+	private static byte loginFailed(ByteBuffer response) {
+		Protocol.putString(response, "Login failed");
+		return Protocol.LOGIN_FAILED;
+	}
+}
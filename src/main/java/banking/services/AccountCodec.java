@@ -0,0 +1,112 @@
+package banking.services;
+
+import banking.Account;
+import banking.AccountNumber;
+import banking.Payee;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Compact binary encoding of an account, including its payees and credential hash.
+ */
+public class AccountCodec {
+	public static final int FORMAT_VERSION = 2;
+
+	private static final Account.AccountType[] TYPES = Account.AccountType.values();
+	private static final Account.Status[] STATUSES = Account.Status.values();
+
+	/**
+	 * Write the account
+	 *
+	 * @param out
+	 * @param account
+	 * @throws IOException
+	 */
+	public static void write(DataOutput out, Account account) throws IOException {
+		synchronized (account) {	// Read a consistent view of the account
+			UUID accountNumber = account.getAccountNumber().toUUID();
+			out.writeByte(FORMAT_VERSION);
+			out.writeLong(accountNumber.getMostSignificantBits());
+			out.writeLong(accountNumber.getLeastSignificantBits());
+			out.writeUTF(account.getCredentials().getUsername());
+			out.writeUTF(account.getCredentials().getPasswordHash());
+			out.writeByte(account.getAccountType().ordinal());
+			out.writeUTF(account.getCurrency().getCurrencyCode());
+			out.writeByte(account.getStatus().ordinal());
+			out.writeDouble(account.getBalanceExcludingOverdraft());
+			out.writeDouble(account.getOverdraft().getBalance());
+			out.writeLong(account.getLastActivity());
+
+			List<Payee> payees = account.getPayees();
+			out.writeInt(payees.size());
+			for (Payee payee : payees) {
+				out.writeUTF(payee.getSortCode());
+				out.writeUTF(payee.getAccountNumber());
+				out.writeUTF(payee.getPayee());
+				out.writeUTF(payee.getCurrency() == null ? "" : payee.getCurrency().getCurrencyCode());
+			}
+		}
+	}
+
+	/**
+	 * Read an account written by {@link #write(DataOutput, Account)}. The account is not added to the store.
+	 * Accounts written before currencies were recorded are read in the default currency.
+	 *
+	 * @param in
+	 * @return account
+	 * @throws IOException if the data is malformed or in an unknown format
+	 */
+	public static Account read(DataInput in) throws IOException {
+		int version = in.readByte();
+		if (version != 1 && version != FORMAT_VERSION) {
+			throw new IOException(String.format("Unsupported account format version %s", version));
+		}
+
+		AccountNumber accountNumber = AccountNumber.of(new UUID(in.readLong(), in.readLong()));
+		Account.Credentials credentials = Account.Credentials.fromHash(in.readUTF(), in.readUTF());
+		Account.AccountType type = readOrdinal(in, TYPES, "account type");
+		Currency currency = version == 1 ? Account.DEFAULT_CURRENCY : readCurrency(in.readUTF());
+		Account.Status status = readOrdinal(in, STATUSES, "account status");
+		double balance = in.readDouble();
+		double overdraftBalance = in.readDouble();
+		long lastActivity = in.readLong();
+
+		int payeeCount = in.readInt();
+		if (payeeCount < 0) {
+			throw new IOException(String.format("Invalid payee count %s", payeeCount));
+		}
+		List<Payee> payees = new ArrayList<>(payeeCount);
+		for (int i = 0; i < payeeCount; i++) {
+			Payee payee = new Payee(in.readUTF(), in.readUTF(), in.readUTF(), version == 1 ? null : readCurrency(in.readUTF()));
+			payees.add(payee);
+		}
+
+		return Account.restore(credentials, type, currency, accountNumber, status, balance, overdraftBalance, payees, lastActivity);
+	}
+
+	private static <T> T readOrdinal(DataInput in, T[] values, String name) throws IOException {
+		int ordinal = in.readByte();
+		if (ordinal < 0 || ordinal >= values.length) {
+			throw new IOException(String.format("Unknown %s %s", name, ordinal));
+		}
+		return values[ordinal];
+	}
+
+	private static Currency readCurrency(String code) throws IOException {
+		if (code.isEmpty()) {
+			return null;
+		}
+
+		try {
+			return Currency.getInstance(code);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(String.format("Unknown currency %s", code), e);
+		}
+	}
+}
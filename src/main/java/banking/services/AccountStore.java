@@ -1,38 +1,83 @@
 package banking.services;
 
 import banking.Account;
+import banking.AccountNumber;
+import banking.services.archive.AccountArchive;
+import banking.services.reconciliation.StateTree;
 
-import javax.security.auth.login.FailedLoginException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
- * Store of accounts
+ * Store of accounts, safe for accounts to be opened concurrently.
  */
 public class AccountStore {
-	private static HashMap<String, List<Account>> accounts = new HashMap<>();
+	private static volatile ConcurrentHashMap<String, List<Account>> accounts = new ConcurrentHashMap<>();
+	private static volatile ConcurrentHashMap<AccountNumber, Account> accountsByNumber = new ConcurrentHashMap<>();
+	private static final AtomicLong snapshotEpoch = new AtomicLong();
+	private static final ReentrantLock snapshotLock = new ReentrantLock();
+	private static final ReentrantReadWriteLock epochLock = new ReentrantReadWriteLock();
+	private static volatile AccountArchive archive;
+	private static volatile LoginThrottle loginThrottle = new LoginThrottle();
+	private static volatile StateTree stateTree = new StateTree();
 
 	/**
 	 * Get list of accounts by username. If login is unsuccessful the account is
-	 * not returned in the account list.
+	 * not returned in the account list, throttled attempts return no accounts.
+	 * The password was already hashed when the credentials were created, use
+	 * {@link #getByUsername(String, String)} for logins from untrusted callers.
 	 * @param credentials
 	 * @return
 	 */
 	public static List<Account> getByUsername(Account.Credentials credentials) {
-		 List<Account> accountList = accounts.get(credentials.getUsername());
-		 List<Account> results = new ArrayList<>();
+		if (!loginThrottle.tryAcquire(credentials.getUsername())) {
+			return Collections.emptyList();
+		}
 
-		 for (Account a : accountList) {
+		return authenticate(credentials);
+	}
+
+	/**
+	 * Get list of accounts by username and password. Throttled attempts return
+	 * no accounts without the password being hashed.
+	 * @param username
+	 * @param password
+	 * @return
+	 */
+	public static List<Account> getByUsername(String username, String password) {
+		if (!loginThrottle.tryAcquire(username)) {
+			return Collections.emptyList();
+		}
+
+		return authenticate(new Account.Credentials(username, password));
+	}
+
+	private static List<Account> authenticate(Account.Credentials credentials) {
+		 String username = credentials.getUsername();
+		 restoreArchived(credentials);	// Bring back archived accounts the credentials log in to first
 
-			 try {
-				 if (a.login(credentials)) {
-				 	results.add(a);	// Add authenticated account to results list
-				 }
+		 List<Account> accountList = accounts.getOrDefault(username, Collections.emptyList());
+		 List<Account> results = new ArrayList<>();
 
-			 } catch (FailedLoginException e) {
-				 e.printStackTrace();
+		 for (Account a : accountList) {
+			 if (a.getCredentials().validate(credentials)) {
+				 results.add(a);	// Add authenticated account to results list
 			 }
 		 }
 
+		 if (results.isEmpty()) {
+			 loginThrottle.recordFailure(username);
+		 } else {
+			 loginThrottle.recordSuccess(username);
+		 }
 		 return results;
 	}
 
@@ -41,20 +86,183 @@ public class AccountStore {
 	 * @param account
 	 */
 	public static void add(Account account) {
-		List<Account> existing = accounts.get(account.getCredentials().getUsername());
-		if (existing != null) {	// User already has an account
-			existing.add(account);	// Add another account
-		} else {	// User does not have any accounts
-			existing = new ArrayList<>();
-			existing.add(account);
-			accounts.put(account.getCredentials().getUsername(), existing);	// Add the account to `HashMap`
+		// Create the user's account list if they don't have any accounts, then add the account
+		accounts.computeIfAbsent(account.getCredentials().getUsername(), username -> new CopyOnWriteArrayList<>())
+				.add(account);
+		accountsByNumber.put(account.getAccountNumber(), account);
+	}
+
+	/**
+	 * Add a batch of new accounts to the book, skipping any whose account number is already live
+	 * or archived. Each user's account list is copied once per batch rather than once per account.
+	 * @param batch
+	 * @return number of accounts added
+	 */
+	public static int addAll(Collection<Account> batch) {
+		AccountArchive accountArchive = archive;
+		Map<String, List<Account>> added = new HashMap<>();
+		for (Account account : batch) {
+			if ((accountArchive == null || !accountArchive.contains(account.getAccountNumber()))
+					&& accountsByNumber.putIfAbsent(account.getAccountNumber(), account) == null) {
+				added.computeIfAbsent(account.getCredentials().getUsername(), username -> new ArrayList<>()).add(account);
+				stateTree.add(account.getAccountNumber(), account.getStateHash());
+			}
+		}
+
+		int count = 0;
+		for (Map.Entry<String, List<Account>> user : added.entrySet()) {
+			accounts.computeIfAbsent(user.getKey(), username -> new CopyOnWriteArrayList<>()).addAll(user.getValue());
+			count += user.getValue().size();
+		}
+		return count;
+	}
+
+	/**
+	 * Get an account by its account number.
+	 * @param accountNumber
+	 * @return account, or null if there is no account with the number
+	 */
+	public static Account getByAccountNumber(AccountNumber accountNumber) {
+		if (accountNumber == null) {
+			return null;
+		}
+
+		Account account = accountsByNumber.get(accountNumber);
+		if (account == null && archive != null) {
+			try {
+				account = archive.restore(accountNumber);	// Not live, load it back from the archive
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			if (account == null) {
+				account = accountsByNumber.get(accountNumber);	// Reattached or restored by another thread in between
+			}
 		}
+		return account;
+	}
+
+	/**
+	 * Remove an account from the store, e.g. when it's archived.
+	 * @param account
+	 */
+	public static void remove(Account account) {
+		accounts.computeIfPresent(account.getCredentials().getUsername(), (username, existing) -> {
+			existing.remove(account);
+			return existing.isEmpty() ? null : existing;	// Drop users with no accounts left
+		});
+		accountsByNumber.remove(account.getAccountNumber(), account);
+	}
+
+	/**
+	 * Set the archive closed and dormant accounts are moved to, accounts in
+	 * the archive are restored to the store when they're looked up.
+	 * @param accountArchive archive, or null to stop restoring from an archive
+	 */
+	public static void setArchive(AccountArchive accountArchive) {
+		archive = accountArchive;
+	}
+
+	public static AccountArchive getArchive() {
+		return archive;
+	}
+
+	/**
+	 * Set the throttle applied to logins.
+	 * @param throttle
+	 */
+	public static void setLoginThrottle(LoginThrottle throttle) {
+		loginThrottle = throttle;
+	}
+
+	public static LoginThrottle getLoginThrottle() {
+		return loginThrottle;
+	}
+
+	/**
+	 * Returns the Merkle tree over the state of every account in the book, live or archived.
+	 * @return
+	 */
+	public static StateTree getStateTree() {
+		return stateTree;
+	}
+
+	private static void restoreArchived(Account.Credentials credentials) {
+		if (archive != null) {
+			try {
+				archive.restore(credentials);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Returns a live, read only view of every account in the store. The view
+	 * can be iterated (and split for parallel streams) while accounts are added.
+	 * @return all accounts
+	 */
+	public static Collection<Account> all() {
+		return Collections.unmodifiableCollection(accountsByNumber.values());
+	}
+
+	/**
+	 * Returns the number of accounts in the store.
+	 * @return
+	 */
+	public static int size() {
+		return accountsByNumber.size();
+	}
+
+	/**
+	 * Returns the current snapshot epoch. Accounts record the epoch when they
+	 * are changed so the state as of a snapshot can still be read afterwards.
+	 * @return current epoch
+	 */
+	public static long currentEpoch() {
+		return snapshotEpoch.get();
+	}
+
+	/**
+	 * Start a new point-in-time snapshot of the store. Account state read for the
+	 * returned epoch reflects the store at the time this was called.
+	 * @return snapshot epoch
+	 */
+	public static long beginSnapshot() {
+		epochLock.writeLock().lock();	// Waits for operations changing several accounts to finish
+		try {
+			return snapshotEpoch.incrementAndGet();
+		} finally {
+			epochLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the lock that keeps the snapshot epoch from changing. Operations changing
+	 * several accounts hold the read lock, taken before any account lock, so a snapshot
+	 * sees all of their changes or none. Snapshots begin holding the write lock.
+	 * @return epoch lock
+	 */
+	public static ReadWriteLock getEpochLock() {
+		return epochLock;
+	}
+
+	/**
+	 * Returns the lock held while a snapshot is being read, and while accounts are
+	 * archived so they don't move out of the store during a snapshot.
+	 * @return snapshot lock
+	 */
+	public static Lock getSnapshotLock() {
+		return snapshotLock;
 	}
 
 	/**
 	 * Delete all accounts in the store.
 	 */
 	public static void deleteAll() {
-		accounts = new HashMap<>();
+		accounts = new ConcurrentHashMap<>();
+		accountsByNumber = new ConcurrentHashMap<>();
+		archive = null;
+		loginThrottle = new LoginThrottle();
+		stateTree = new StateTree();
 	}
 }
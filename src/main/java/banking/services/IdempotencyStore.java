@@ -0,0 +1,179 @@
+package banking.services;
+
+import banking.AccountNumber;
+import banking.services.cache.BoundedExpiringCache;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Store of request keys used to make account operations idempotent. The first
+ * request for a key is applied, repeated requests get the original outcome back.
+ * Request keys are shared by all accounts, clients should generate a new key
+ * (e.g. a UUID) per request and reuse it only when retrying that request. Each
+ * key records the account, operation, payee and amount it was first used for,
+ * reusing it for a different request is rejected rather than treated as a retry.
+ *
+ * Keys are remembered for {@link #KEY_TTL_HOURS} hours, a retry within that window is
+ * never applied twice. Keys still within their time to live are never evicted; once
+ * around {@link #MAXIMUM_KEYS} keys are live, requests with new keys are refused
+ * until older keys expire.
+ *
+ * Lookups miss the 100ns target for anything but small working sets: on a single
+ * core they take around 85ns across 1k keys, 330ns across 100k keys and 1.1us
+ * across 10M keys. The time goes on cache misses walking the map entries rather
+ * than on locking, see {@code banking.workload.IdempotencyBenchmark}.
+ */
+public class IdempotencyStore {
+	public static final int MAXIMUM_KEYS = 10_000_000;
+	public static final long KEY_TTL_HOURS = 24;
+
+	private static BoundedExpiringCache<String, Outcome> requests = newCache();
+
+	/**
+	 * Claim a request key before applying the operation.
+	 *
+	 * @param requestKey client supplied request key
+	 * @param request the request the key is used for
+	 * @return null if the key was claimed and the operation should be applied,
+	 * otherwise the outcome recorded for the key
+	 * @throws IllegalArgumentException if the key was already used for a different request
+	 * @throws IllegalStateException if the store is full of keys within their time to live
+	 */
+	public static Outcome begin(String requestKey, Request request) throws IllegalArgumentException, IllegalStateException {
+		if (requestKey == null) {
+			throw new IllegalArgumentException("Request key must not be null");
+		}
+
+		Outcome previous;
+		try {
+			previous = requests.putIfAbsentWithoutEviction(requestKey, new Outcome(request, State.IN_PROGRESS, null));
+		} catch (IllegalStateException e) {
+			throw new IllegalStateException("Too many request keys in use, retry later");
+		}
+		if (previous != null && !previous.request.equals(request)) {
+			throw new IllegalArgumentException(String.format("Request key %s was used for a different request", requestKey));
+		}
+		return previous;
+	}
+
+	/**
+	 * Record that the operation for the key was applied successfully.
+	 *
+	 * @param requestKey
+	 * @param request
+	 */
+	public static void succeed(String requestKey, Request request) {
+		requests.put(requestKey, new Outcome(request, State.SUCCESS, null));
+	}
+
+	/**
+	 * Record that the operation for the key was rejected.
+	 *
+	 * @param requestKey
+	 * @param request
+	 * @param failure exception the operation was rejected with
+	 */
+	public static void fail(String requestKey, Request request, Exception failure) {
+		requests.put(requestKey, new Outcome(request, State.FAILED, failure));
+	}
+
+	/**
+	 * Release a claimed key without recording an outcome so the request can be retried.
+	 *
+	 * @param requestKey
+	 */
+	public static void abandon(String requestKey) {
+		requests.remove(requestKey);
+	}
+
+	/**
+	 * Delete all request keys in the store.
+	 */
+	public static void deleteAll() {
+		requests = newCache();
+	}
+
+	private static BoundedExpiringCache<String, Outcome> newCache() {
+		return new BoundedExpiringCache<>(MAXIMUM_KEYS, KEY_TTL_HOURS, TimeUnit.HOURS);
+	}
+
+	private enum State {
+		IN_PROGRESS,
+		SUCCESS,
+		FAILED
+	}
+
+	/**
+	 * What a request key was used for, retries must match it.
+	 */
+	public static final class Request {
+		private final AccountNumber accountNumber;
+		private final String operation;
+		private final String payee;
+		private final double amount;
+
+		/**
+		 * @param accountNumber account the operation is on
+		 * @param operation name of the operation, e.g. "deposit"
+		 * @param payee payee name, or null if the operation has no payee
+		 * @param amount
+		 */
+		public Request(AccountNumber accountNumber, String operation, String payee, double amount) {
+			this.accountNumber = accountNumber;
+			this.operation = operation;
+			this.payee = payee;
+			this.amount = amount;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Request request = (Request) o;
+			return Double.compare(request.amount, amount) == 0 &&
+					Objects.equals(accountNumber, request.accountNumber) &&
+					operation.equals(request.operation) &&
+					Objects.equals(payee, request.payee);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(accountNumber, operation, payee, amount);
+		}
+	}
+
+	/**
+	 * Outcome of a request, either successful, rejected or still being applied.
+	 */
+	public static final class Outcome {
+		private final Request request;
+		private final State state;
+		private final Exception failure;
+
+		private Outcome(Request request, State state, Exception failure) {
+			this.request = request;
+			this.state = state;
+			this.failure = failure;
+		}
+
+		/**
+		 * Rethrow the exception the original request was rejected with, if any.
+		 *
+		 * @param checkedType checked exception type the operation declares
+		 * @throws X original checked exception
+		 * @throws IllegalStateException if the original request is still being applied
+		 */
+		public <X extends Exception> void rethrow(Class<X> checkedType) throws X {
+			if (state == State.IN_PROGRESS) {
+				throw new IllegalStateException("Request is already in progress");
+			}
+			if (failure instanceof RuntimeException) {
+				throw (RuntimeException) failure;
+			}
+			if (checkedType.isInstance(failure)) {
+				throw checkedType.cast(failure);
+			}
+		}
+	}
+}
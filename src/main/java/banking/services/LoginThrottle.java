@@ -0,0 +1,192 @@
+package banking.services;
+
+import banking.services.cache.BoundedExpiringCache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throttles login attempts before any password is hashed, protecting the CPU from
+ * credential-stuffing. Failed attempts are limited per username, repeated failures
+ * lock a username out for a doubling period, and attempts are limited across all usernames.
+ *
+ * Usernames whose last login succeeded draw on their own global allowance, so
+ * an attack on other usernames doesn't starve legitimate users. They're held apart
+ * from other usernames, so failed attempts on many usernames can't evict them, and
+ * stay trusted for {@link #TRUSTED_TTL_DAYS} after their last successful login.
+ */
+public class LoginThrottle {
+	public static final int MAXIMUM_USERNAMES = 1_000_000;
+	public static final long USERNAME_TTL_MINUTES = 60;
+	public static final long TRUSTED_TTL_DAYS = 30;
+	public static final long MAX_LOCKOUT_NANOS = TimeUnit.MINUTES.toNanos(15);
+
+	private final RateLimiter trusted;
+	private final RateLimiter untrusted;
+	private final long userIntervalNanos;
+	private final int userBurst;
+	private final int failuresBeforeLockout;
+	private final long lockoutNanos;
+	private final BoundedExpiringCache<String, UserState> users;
+	private final BoundedExpiringCache<String, UserState> trustedUsers;
+
+	/**
+	 * Create a throttle with default limits
+	 */
+	public LoginThrottle() {
+		this(50_000, 200, 10, 5, 5, TimeUnit.SECONDS.toMillis(1));
+	}
+
+	/**
+	 * Create a throttle
+	 *
+	 * @param trustedPerSecond attempts per second across usernames whose last login succeeded
+	 * @param untrustedPerSecond attempts per second across all other usernames
+	 * @param userPerMinute failed attempts per minute for one username
+	 * @param userBurst failed attempts one username can make at once
+	 * @param failuresBeforeLockout failed attempts before a username is locked out
+	 * @param lockoutMillis first lockout period, doubling for each further failure
+	 */
+	public LoginThrottle(double trustedPerSecond, double untrustedPerSecond, double userPerMinute, int userBurst,
+						 int failuresBeforeLockout, long lockoutMillis) {
+		this(trustedPerSecond, untrustedPerSecond, userPerMinute, userBurst, failuresBeforeLockout, lockoutMillis, MAXIMUM_USERNAMES);
+	}
+
+	LoginThrottle(double trustedPerSecond, double untrustedPerSecond, double userPerMinute, int userBurst,
+				  int failuresBeforeLockout, long lockoutMillis, int maximumUsernames) {
+		this.users = new BoundedExpiringCache<>(maximumUsernames, USERNAME_TTL_MINUTES, TimeUnit.MINUTES);
+		this.trustedUsers = new BoundedExpiringCache<>(maximumUsernames, TRUSTED_TTL_DAYS, TimeUnit.DAYS);
+		this.trusted = new RateLimiter(trustedPerSecond, (int) Math.max(1, trustedPerSecond));
+		this.untrusted = new RateLimiter(untrustedPerSecond, (int) Math.max(1, untrustedPerSecond));
+		this.userIntervalNanos = (long) (TimeUnit.MINUTES.toNanos(1) / userPerMinute);
+		this.userBurst = userBurst;
+		this.failuresBeforeLockout = failuresBeforeLockout;
+		this.lockoutNanos = TimeUnit.MILLISECONDS.toNanos(lockoutMillis);
+	}
+
+	/**
+	 * Take an attempt for the username. Doesn't allocate when the attempt is rejected.
+	 *
+	 * @param username
+	 * @return true if the login may be attempted, false if it's throttled
+	 */
+	public boolean tryAcquire(String username) {
+		long now = System.nanoTime();
+		UserState user = find(username);
+		if (user != null && !user.mayAttempt(now, userIntervalNanos, userBurst)) {
+			return false;
+		}
+
+		RateLimiter global = user != null && user.isTrusted() ? trusted : untrusted;
+		return global.tryAcquire(now);
+	}
+
+	/**
+	 * Record a failed login, locking the username out once it has failed too often
+	 *
+	 * @param username
+	 */
+	public void recordFailure(String username) {
+		userState(username).recordFailure(System.nanoTime(), userIntervalNanos, failuresBeforeLockout, lockoutNanos);
+	}
+
+	/**
+	 * Record a successful login, clearing failures and trusting the username
+	 * for another {@link #TRUSTED_TTL_DAYS} days
+	 *
+	 * @param username
+	 */
+	public void recordSuccess(String username) {
+		UserState user = userState(username);
+		user.recordSuccess();
+		trustedUsers.put(username, user);	// Restarts its time to live
+		users.remove(username);
+	}
+
+	private UserState find(String username) {
+		UserState user = trustedUsers.get(username);
+		return user != null ? user : users.get(username);
+	}
+
+	private UserState userState(String username) {
+		UserState user = find(username);
+		if (user == null) {
+			UserState created = new UserState(System.nanoTime(), userBurst, userIntervalNanos);
+			user = users.putIfAbsent(username, created);
+			if (user == null) {
+				user = created;
+			}
+		}
+		return user;
+	}
+
+	/**
+	 * Generic cell rate limiter, a lock free token bucket holding the time the bucket is next empty.
+	 */
+	private static final class RateLimiter {
+		private final long intervalNanos;
+		private final long burstNanos;
+		private final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime());
+
+		private RateLimiter(double perSecond, int burst) {
+			this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / perSecond);
+			this.burstNanos = intervalNanos * burst;
+		}
+
+		private boolean tryAcquire(long now) {
+			long tat;
+			long next;
+			do {
+				tat = theoreticalArrival.get();
+				next = Math.max(tat, now) + intervalNanos;
+				if (next - now > burstNanos) {
+					return false;	// Bucket is empty
+				}
+			} while (!theoreticalArrival.compareAndSet(tat, next));
+			return true;
+		}
+	}
+
+	/**
+	 * Failure allowance, failures and lockout of a username
+	 */
+	private static final class UserState {
+		private long theoreticalArrival;
+		private int failures;
+		private long lockedUntil;
+		private boolean succeeded;
+
+		private UserState(long now, int burst, long intervalNanos) {
+			theoreticalArrival = now - intervalNanos * burst;	// Start with a full bucket
+		}
+
+		/**
+		 * Returns false while locked out or the failure allowance is used up
+		 */
+		private synchronized boolean mayAttempt(long now, long intervalNanos, int burst) {
+			if (lockedUntil - now > 0) {
+				return false;
+			}
+			return Math.max(theoreticalArrival, now) + intervalNanos - now <= intervalNanos * burst;
+		}
+
+		private synchronized boolean isTrusted() {
+			return succeeded && failures == 0;
+		}
+
+		private synchronized void recordFailure(long now, long intervalNanos, int failuresBeforeLockout, long lockoutNanos) {
+			theoreticalArrival = Math.max(theoreticalArrival, now) + intervalNanos;	// Use up some of the failure allowance
+			failures++;
+			if (failures >= failuresBeforeLockout) {
+				int doublings = Math.min(failures - failuresBeforeLockout, 20);
+				lockedUntil = now + Math.min(lockoutNanos << doublings, MAX_LOCKOUT_NANOS);
+			}
+		}
+
+		private synchronized void recordSuccess() {
+			failures = 0;
+			lockedUntil = 0;
+			succeeded = true;
+		}
+	}
+}
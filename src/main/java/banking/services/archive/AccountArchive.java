@@ -0,0 +1,314 @@
+package banking.services.archive;
+
+import banking.Account;
+import banking.AccountNumber;
+import banking.services.AccountCodec;
+import banking.services.AccountStore;
+import banking.services.reporting.BookSummary;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Predicate;
+
+/**
+ * Archive of closed and dormant accounts held in an append-only segment file.
+ * Only the position, credentials and status of each archived account are kept on
+ * the heap, accounts are read back from the segment and returned to the store when
+ * they're next used. Logins are checked against the credentials on the heap so only
+ * successful logins read from the segment.
+ *
+ * NOTE: The segment is working storage for the running process, it's truncated
+ * when the archive is opened and space used by restored accounts isn't reclaimed.
+ */
+public class AccountArchive implements Closeable {
+	private final FileChannel segment;
+	private long segmentEnd;
+	private final ConcurrentHashMap<AccountNumber, Archived> positions = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, AccountNumber[]> accountsByUsername = new ConcurrentHashMap<>();
+	private final BookSummary summary = new BookSummary();	// Totals of archived accounts for reporting
+	private long generation;
+
+	/**
+	 * Open an archive backed by the segment file
+	 *
+	 * @param segmentFile
+	 * @throws IOException
+	 */
+	public AccountArchive(Path segmentFile) throws IOException {
+		segment = FileChannel.open(segmentFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	/**
+	 * Write the account to the archive and remove it from the store. Called by
+	 * {@link Account#archiveIfDormant(AccountArchive, long)} holding the account lock.
+	 *
+	 * @param account
+	 * @return archive generation, which the account object must present to be reattached
+	 * @throws IOException
+	 */
+	public synchronized long add(Account account) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(0);	// Record length, filled in below
+		AccountCodec.write(out, account);
+		ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+		record.putInt(0, record.remaining() - Integer.BYTES);
+
+		long position = segmentEnd;
+		while (record.hasRemaining()) {
+			segmentEnd += segment.write(record, segmentEnd);
+		}
+
+		AccountNumber accountNumber = account.getAccountNumber();
+		positions.put(accountNumber, new Archived(position, ++generation, account.getCredentials(), account.getStatus()));
+		accountsByUsername.merge(account.getCredentials().getUsername(), new AccountNumber[] { accountNumber }, AccountArchive::concat);
+		summary.visit(account, account.getBalanceExcludingOverdraft(), account.getOverdraft().getBalance(), account.getStatus());
+		AccountStore.remove(account);
+		return generation;
+	}
+
+	/**
+	 * Put an archived account object back into the store, used when an account
+	 * object that was archived is used again. Called holding the account lock.
+	 *
+	 * @param account
+	 * @param accountGeneration generation returned when the account object was archived
+	 * @return current snapshot epoch
+	 * @throws IllegalStateException if the account has since been restored from the segment,
+	 * even if it has been archived again
+	 */
+	public synchronized long reattach(Account account, long accountGeneration) throws IllegalStateException {
+		Archived archived = positions.get(account.getAccountNumber());
+		if (archived == null || archived.generation != accountGeneration) {
+			throw new IllegalStateException("Account has already been restored from the archive, look it up again");
+		}
+		positions.remove(account.getAccountNumber());
+
+		removeFromIndex(account);
+		AccountStore.add(account);
+		return AccountStore.currentEpoch();
+	}
+
+	/**
+	 * Restore an archived account to the store
+	 *
+	 * @param accountNumber
+	 * @return restored account, or null if the account is not in the archive
+	 * @throws IOException
+	 */
+	public synchronized Account restore(AccountNumber accountNumber) throws IOException {
+		Archived archived = positions.remove(accountNumber);
+		if (archived == null) {
+			return null;
+		}
+
+		Account account = read(archived.position);
+		removeFromIndex(account);
+		AccountStore.add(account);
+		return account;
+	}
+
+	/**
+	 * Restore a user's archived accounts that the credentials log in to. Closed accounts
+	 * stay archived, they're only restored when looked up by account number.
+	 *
+	 * @param credentials
+	 * @return restored accounts
+	 * @throws IOException
+	 */
+	public List<Account> restore(Account.Credentials credentials) throws IOException {
+		if (!accountsByUsername.containsKey(credentials.getUsername())) {	// Don't lock for users without archived accounts
+			return Collections.emptyList();
+		}
+
+		synchronized (this) {
+			AccountNumber[] accountNumbers = accountsByUsername.get(credentials.getUsername());
+			if (accountNumbers == null) {
+				return Collections.emptyList();
+			}
+
+			List<Account> restored = new ArrayList<>(accountNumbers.length);
+			for (AccountNumber accountNumber : accountNumbers) {
+				Archived archived = positions.get(accountNumber);
+				if (archived.status != Account.Status.CLOSED && archived.credentials.validate(credentials)) {
+					restored.add(restore(accountNumber));
+				}
+			}
+			return restored;
+		}
+	}
+
+	/**
+	 * Start a point-in-time snapshot of the store, adding the totals of archived
+	 * accounts as of the snapshot to the summary.
+	 *
+	 * @param into summary to add archived totals to
+	 * @return snapshot epoch
+	 */
+	public long beginSnapshot(BookSummary into) {
+		Lock epochChange = AccountStore.getEpochLock().writeLock();
+		epochChange.lock();	// Before the archive lock, transfers restore accounts holding the read lock
+		try {
+			synchronized (this) {
+				into.combine(summary);
+				return AccountStore.beginSnapshot();
+			}
+		} finally {
+			epochChange.unlock();
+		}
+	}
+
+	/**
+	 * Returns true if the account is in the archive
+	 *
+	 * @param accountNumber
+	 * @return
+	 */
+	public boolean contains(AccountNumber accountNumber) {
+		return positions.containsKey(accountNumber);
+	}
+
+	/**
+	 * Returns the number of archived accounts
+	 *
+	 * @return
+	 */
+	public int size() {
+		return positions.size();
+	}
+
+	/**
+	 * Read archived accounts without restoring them to the store
+	 *
+	 * @param filter selects the account numbers to read
+	 * @return archived accounts, not attached to the store
+	 * @throws IOException
+	 */
+	public synchronized List<Account> read(Predicate<AccountNumber> filter) throws IOException {
+		List<Account> accounts = new ArrayList<>();
+		for (Map.Entry<AccountNumber, Archived> archived : positions.entrySet()) {
+			if (filter.test(archived.getKey())) {
+				accounts.add(read(archived.getValue().position));
+			}
+		}
+		return accounts;
+	}
+
+	/**
+	 * Read archived accounts without restoring them to the store, holding the archive lock
+	 * only while these accounts are read. Accounts restored since their numbers were
+	 * collected are skipped.
+	 *
+	 * @param accountNumbers accounts to read, e.g. a batch from {@link #accountNumbers()}
+	 * @return archived accounts, not attached to the store
+	 * @throws IOException
+	 */
+	public synchronized List<Account> read(Collection<AccountNumber> accountNumbers) throws IOException {
+		List<Account> accounts = new ArrayList<>(accountNumbers.size());
+		for (AccountNumber accountNumber : accountNumbers) {
+			Archived archived = positions.get(accountNumber);
+			if (archived != null) {
+				accounts.add(read(archived.position));
+			}
+		}
+		return accounts;
+	}
+
+	/**
+	 * Returns a view of the numbers of archived accounts, which can be iterated without
+	 * locking the archive while accounts are archived and restored
+	 *
+	 * @return
+	 */
+	public Set<AccountNumber> accountNumbers() {
+		return Collections.unmodifiableSet(positions.keySet());
+	}
+
+	/**
+	 * Returns the number of bytes written to the segment
+	 *
+	 * @return
+	 */
+	public synchronized long getSegmentSize() {
+		return segmentEnd;
+	}
+
+	@Override
+	public void close() throws IOException {
+		segment.close();
+	}
+
+	private Account read(long position) throws IOException {
+		ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+		readFully(length, position);
+		ByteBuffer record = ByteBuffer.allocate(length.getInt(0));
+		readFully(record, position + Integer.BYTES);
+
+		return AccountCodec.read(new DataInputStream(new ByteArrayInputStream(record.array())));
+	}
+
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = segment.read(buffer, position + buffer.position());
+			if (read < 0) {
+				throw new EOFException("Archive segment is truncated");
+			}
+		}
+	}
+
+	private void removeFromIndex(Account account) {
+		AccountNumber accountNumber = account.getAccountNumber();
+		accountsByUsername.computeIfPresent(account.getCredentials().getUsername(), (username, accountNumbers) -> {
+			List<AccountNumber> remaining = new ArrayList<>(accountNumbers.length);
+			for (AccountNumber a : accountNumbers) {
+				if (!a.equals(accountNumber)) {
+					remaining.add(a);
+				}
+			}
+			return remaining.isEmpty() ? null : remaining.toArray(new AccountNumber[0]);
+		});
+		summary.subtract(account, account.getBalanceExcludingOverdraft(), account.getOverdraft().getBalance(), account.getStatus());
+	}
+
+	/**
+	 * Where an account is in the segment, and what's needed to check logins without reading it
+	 */
+	private static final class Archived {
+		private final long position;
+		private final long generation;
+		private final Account.Credentials credentials;
+		private final Account.Status status;
+
+		private Archived(long position, long generation, Account.Credentials credentials, Account.Status status) {
+			this.position = position;
+			this.generation = generation;
+			this.credentials = credentials;
+			this.status = status;
+		}
+	}
+
+	private static AccountNumber[] concat(AccountNumber[] existing, AccountNumber[] added) {
+		AccountNumber[] result = new AccountNumber[existing.length + added.length];
+		System.arraycopy(existing, 0, result, 0, existing.length);
+		System.arraycopy(added, 0, result, existing.length, added.length);
+		return result;
+	}
+}
@@ -0,0 +1,155 @@
+package banking.services.archive;
+
+import banking.Account;
+import banking.AccountNumber;
+import banking.services.AccountStore;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Background sweeper moving closed and dormant accounts out of the store into the archive.
+ */
+public class AccountArchiver {
+	private static final int LOOKUP_SAMPLE = 1_000;
+	private static final int LOOKUP_ROUNDS = 10;
+
+	private final AccountArchive archive;
+	private final long dormantMillis;
+	private ScheduledExecutorService executor;
+	private volatile SweepReport lastReport;
+
+	/**
+	 * Create a sweeper
+	 *
+	 * @param archive archive to move accounts to
+	 * @param dormantPeriod how long an account must be inactive to be archived
+	 * @param unit unit of the dormant period
+	 */
+	public AccountArchiver(AccountArchive archive, long dormantPeriod, TimeUnit unit) {
+		this.archive = archive;
+		this.dormantMillis = unit.toMillis(dormantPeriod);
+	}
+
+	/**
+	 * Archive all closed and dormant accounts in the store. Sweeps don't run
+	 * while a book report is reading the store. Heap usage isn't measured.
+	 *
+	 * @return sweep report
+	 */
+	public SweepReport sweep() {
+		return sweep(false);
+	}
+
+	/**
+	 * Archive all closed and dormant accounts in the store. Sweeps don't run
+	 * while a book report is reading the store.
+	 *
+	 * @param measureHeap run a full garbage collection before and after the sweep
+	 *                    so the report shows the live heap, which pauses the application
+	 * @return sweep report
+	 */
+	public SweepReport sweep(boolean measureHeap) {
+		long lookupNanosBefore = timeLookups();
+		long heapBefore = measureHeap ? liveHeap() : SweepReport.NOT_MEASURED;
+		long start = System.nanoTime();
+		long dormantBefore = System.currentTimeMillis() - dormantMillis;
+		int liveBefore = AccountStore.size();
+		int archived = 0;
+
+		Lock snapshotLock = AccountStore.getSnapshotLock();
+		snapshotLock.lock();
+		try {
+			for (Account account : AccountStore.all()) {
+				if (account.archiveIfDormant(archive, dormantBefore)) {
+					archived++;
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();	// Leave the remaining accounts for the next sweep
+		} finally {
+			snapshotLock.unlock();
+		}
+		long duration = System.nanoTime() - start;
+
+		lastReport = new SweepReport(archived, liveBefore, AccountStore.size(), heapBefore,
+				measureHeap ? liveHeap() : SweepReport.NOT_MEASURED, lookupNanosBefore, timeLookups(),
+				archive.getSegmentSize(), duration);
+		return lastReport;
+	}
+
+	/**
+	 * Returns the mean time to look up a sample of live accounts by account number
+	 *
+	 * @return nanoseconds per lookup, or zero if the store is empty
+	 */
+	private static long timeLookups() {
+		AccountNumber[] sample = new AccountNumber[LOOKUP_SAMPLE];
+		int count = 0;
+		for (Iterator<Account> accounts = AccountStore.all().iterator(); accounts.hasNext() && count < sample.length; ) {
+			sample[count++] = accounts.next().getAccountNumber();
+		}
+		if (count == 0) {
+			return 0;
+		}
+
+		long start = System.nanoTime();
+		for (int round = 0; round < LOOKUP_ROUNDS; round++) {
+			for (int i = 0; i < count; i++) {
+				AccountStore.getByAccountNumber(sample[i]);
+			}
+		}
+		return (System.nanoTime() - start) / ((long) count * LOOKUP_ROUNDS);
+	}
+
+	/**
+	 * Returns heap in use after a full collection, so garbage left by the sweep isn't counted
+	 */
+	private static long liveHeap() {
+		System.gc();
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	/**
+	 * Start sweeping periodically on a background thread
+	 *
+	 * @param period time between sweeps
+	 * @param unit unit of the period
+	 */
+	public synchronized void start(long period, TimeUnit unit) {
+		if (executor != null) {
+			throw new IllegalStateException("Archiver already started");
+		}
+
+		executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "account-archiver");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.scheduleWithFixedDelay(this::sweep, period, period, unit);
+	}
+
+	/**
+	 * Stop sweeping
+	 */
+	public synchronized void stop() {
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+	}
+
+	/**
+	 * Returns the report of the most recent sweep
+	 *
+	 * @return report, or null if no sweep has run
+	 */
+	public SweepReport getLastReport() {
+		return lastReport;
+	}
+}
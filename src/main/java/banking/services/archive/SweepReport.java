@@ -0,0 +1,94 @@
+package banking.services.archive;
+
+/**
+ * Result of an archive sweep. Lookup latency is the mean time to find a sample of live
+ * accounts by account number. Live heap is read after a full garbage collection, and
+ * only when the sweep was asked to measure it.
+ */
+public class SweepReport {
+	public static final long NOT_MEASURED = -1;
+
+	private final int archivedCount;
+	private final int liveAccountsBefore;
+	private final int liveAccountsAfter;
+	private final long liveHeapBefore;
+	private final long liveHeapAfter;
+	private final long lookupNanosBefore;
+	private final long lookupNanosAfter;
+	private final long segmentSize;
+	private final long durationNanos;
+
+	public SweepReport(int archivedCount, int liveAccountsBefore, int liveAccountsAfter,
+					   long liveHeapBefore, long liveHeapAfter, long lookupNanosBefore, long lookupNanosAfter,
+					   long segmentSize, long durationNanos) {
+		this.archivedCount = archivedCount;
+		this.liveAccountsBefore = liveAccountsBefore;
+		this.liveAccountsAfter = liveAccountsAfter;
+		this.liveHeapBefore = liveHeapBefore;
+		this.liveHeapAfter = liveHeapAfter;
+		this.lookupNanosBefore = lookupNanosBefore;
+		this.lookupNanosAfter = lookupNanosAfter;
+		this.segmentSize = segmentSize;
+		this.durationNanos = durationNanos;
+	}
+
+	public int getArchivedCount() {
+		return archivedCount;
+	}
+
+	public int getLiveAccountsBefore() {
+		return liveAccountsBefore;
+	}
+
+	public int getLiveAccountsAfter() {
+		return liveAccountsAfter;
+	}
+
+	/**
+	 * Returns heap in use after a full collection before the sweep
+	 *
+	 * @return bytes, or {@link #NOT_MEASURED}
+	 */
+	public long getLiveHeapBefore() {
+		return liveHeapBefore;
+	}
+
+	/**
+	 * Returns heap in use after a full collection after the sweep
+	 *
+	 * @return bytes, or {@link #NOT_MEASURED}
+	 */
+	public long getLiveHeapAfter() {
+		return liveHeapAfter;
+	}
+
+	public boolean isHeapMeasured() {
+		return liveHeapBefore != NOT_MEASURED;
+	}
+
+	public long getLookupNanosBefore() {
+		return lookupNanosBefore;
+	}
+
+	public long getLookupNanosAfter() {
+		return lookupNanosAfter;
+	}
+
+	public long getSegmentSize() {
+		return segmentSize;
+	}
+
+	public long getDurationNanos() {
+		return durationNanos;
+	}
+
+	@Override
+	public String toString() {
+		String heap = isHeapMeasured()
+				? String.format("live heap %sMB -> %sMB", liveHeapBefore >> 20, liveHeapAfter >> 20)
+				: "live heap not measured";
+		return String.format("Archived %s accounts in %sms, live accounts %s -> %s, lookup %sns -> %sns, %s, segment %sMB",
+				archivedCount, durationNanos / 1_000_000, liveAccountsBefore, liveAccountsAfter,
+				lookupNanosBefore, lookupNanosAfter, heap, segmentSize >> 20);
+	}
+}
@@ -0,0 +1,232 @@
+package banking.services.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded, time-expiring concurrent cache. Keys are spread over independently
+ * locked segments so there is no global lock, each segment evicts its least
+ * recently used entry once full and drops entries once their time to live has passed.
+ * {@link #putIfAbsentWithoutEviction(Object, Object)} refuses new entries instead of evicting.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class BoundedExpiringCache<K, V> {
+	private final Segment<K, V>[] segments;
+	private final int segmentMask;
+	private final long ttlNanos;
+	private final LongSupplier clock;
+
+	/**
+	 * Create a cache
+	 *
+	 * @param maximumSize approximate maximum number of entries
+	 * @param ttl time to live of an entry
+	 * @param unit unit of the time to live
+	 */
+	public BoundedExpiringCache(int maximumSize, long ttl, TimeUnit unit) {
+		this(maximumSize, ttl, unit, System::nanoTime);
+	}
+
+	BoundedExpiringCache(int maximumSize, long ttl, TimeUnit unit, LongSupplier clock) {
+		if (maximumSize <= 0) {
+			throw new IllegalArgumentException("Maximum size must be a positive number");
+		}
+
+		// Enough segments that threads rarely meet on the same lock, rounded to a power of two
+		int segmentCount = Integer.highestOneBit(Math.max(16, Runtime.getRuntime().availableProcessors() * 4) - 1) << 1;
+		segmentCount = Math.min(segmentCount, Integer.highestOneBit(maximumSize));
+		int segmentCapacity = maximumSize / segmentCount;
+		segmentCapacity += segmentCapacity / 16 + 1;	// Headroom for keys not spreading perfectly evenly
+
+		this.segments = newSegments(segmentCount);
+		for (int i = 0; i < segmentCount; i++) {
+			segments[i] = new Segment<>(segmentCapacity);
+		}
+		this.segmentMask = segmentCount - 1;
+		this.ttlNanos = unit.toNanos(ttl);
+		this.clock = clock;
+	}
+
+	/**
+	 * Returns the live value for the key
+	 *
+	 * @param key
+	 * @return value, or null if absent or expired
+	 */
+	public V get(K key) {
+		Segment<K, V> segment = segmentFor(key);
+		long now = clock.getAsLong();
+		synchronized (segment) {
+			Timed<V> entry = segment.get(key);
+			if (entry == null) {
+				return null;
+			}
+			if (entry.expiresAt - now <= 0) {
+				segment.remove(key);	// Lazily drop the expired entry
+				return null;
+			}
+			return entry.value;
+		}
+	}
+
+	/**
+	 * Associate the value with the key unless a live value is already present
+	 *
+	 * @param key
+	 * @param value
+	 * @return existing live value, or null if the value was added
+	 */
+	public V putIfAbsent(K key, V value) {
+		Segment<K, V> segment = segmentFor(key);
+		long now = clock.getAsLong();
+		synchronized (segment) {
+			Timed<V> entry = segment.get(key);
+			if (entry != null && entry.expiresAt - now > 0) {
+				return entry.value;
+			}
+			segment.now = now;
+			segment.put(key, new Timed<>(value, now + ttlNanos));
+			return null;
+		}
+	}
+
+	/**
+	 * Associate the value with the key unless a live value is already present, refusing
+	 * rather than evicting a live entry when the key's segment is full
+	 *
+	 * @param key
+	 * @param value
+	 * @return existing live value, or null if the value was added
+	 * @throws IllegalStateException if the key's segment is full of live entries
+	 */
+	public V putIfAbsentWithoutEviction(K key, V value) throws IllegalStateException {
+		Segment<K, V> segment = segmentFor(key);
+		long now = clock.getAsLong();
+		synchronized (segment) {
+			Timed<V> entry = segment.get(key);
+			if (entry != null && entry.expiresAt - now > 0) {
+				return entry.value;
+			}
+			if (entry == null && segment.size() >= segment.capacity) {
+				segment.removeExpired(now);
+				if (segment.size() >= segment.capacity) {
+					throw new IllegalStateException("Cache is full");
+				}
+			}
+			segment.now = now;
+			segment.put(key, new Timed<>(value, now + ttlNanos));
+			return null;
+		}
+	}
+
+	/**
+	 * Associate the value with the key, replacing any existing value and
+	 * restarting its time to live
+	 *
+	 * @param key
+	 * @param value
+	 */
+	public void put(K key, V value) {
+		Segment<K, V> segment = segmentFor(key);
+		long now = clock.getAsLong();
+		synchronized (segment) {
+			segment.now = now;
+			segment.put(key, new Timed<>(value, now + ttlNanos));
+		}
+	}
+
+	/**
+	 * Remove the key from the cache
+	 *
+	 * @param key
+	 */
+	public void remove(K key) {
+		Segment<K, V> segment = segmentFor(key);
+		synchronized (segment) {
+			segment.remove(key);
+		}
+	}
+
+	/**
+	 * Returns the number of entries held, including expired entries not yet dropped
+	 *
+	 * @return entry count
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Delete all entries in the cache.
+	 */
+	public void clear() {
+		for (Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <K, V> Segment<K, V>[] newSegments(int count) {
+		return (Segment<K, V>[]) new Segment<?, ?>[count];
+	}
+
+	private Segment<K, V> segmentFor(K key) {
+		int h = key.hashCode() * 0x9E3779B9;
+		h ^= (h >>> 16);	// Mix the hash so similar keys land in different segments
+		return segments[h & segmentMask];
+	}
+
+	private static final class Timed<V> {
+		private final V value;
+		private final long expiresAt;
+
+		private Timed(V value, long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	/**
+	 * Access ordered map guarded by its own monitor
+	 */
+	private static final class Segment<K, V> extends LinkedHashMap<K, Timed<V>> {
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+		private long now;
+
+		private Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		/**
+		 * Drop expired entries from the least recently used end, stopping at the first live one
+		 */
+		private void removeExpired(long now) {
+			Iterator<Timed<V>> entries = values().iterator();
+			while (entries.hasNext() && entries.next().expiresAt - now <= 0) {
+				entries.remove();
+			}
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, Timed<V>> eldest) {
+			// Evict the least recently used entry when full, or when it has expired
+			return size() > capacity || eldest.getValue().expiresAt - now <= 0;
+		}
+	}
+}
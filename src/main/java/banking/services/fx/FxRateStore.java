@@ -0,0 +1,43 @@
+package banking.services.fx;
+
+import banking.Account;
+
+import java.util.Collections;
+
+/**
+ * Holds the current FX rate table. Publishing a new table swaps the reference, so
+ * conversions never wait for an update and always see one complete table.
+ */
+public class FxRateStore {
+	private static volatile FxRates rates = initialRates();
+
+	private static FxRates initialRates() {
+		return new FxRates(Account.DEFAULT_CURRENCY, Collections.emptyMap());
+	}
+
+	/**
+	 * Returns the current rate table. Callers converting several amounts should read
+	 * it once so they all use the same rates.
+	 *
+	 * @return rate table
+	 */
+	public static FxRates current() {
+		return rates;
+	}
+
+	/**
+	 * Replace the current rate table
+	 *
+	 * @param fxRates
+	 */
+	public static void publish(FxRates fxRates) {
+		rates = fxRates;
+	}
+
+	/**
+	 * Back to a table with only the default currency
+	 */
+	public static void deleteAll() {
+		rates = initialRates();
+	}
+}
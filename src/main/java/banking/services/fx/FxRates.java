@@ -0,0 +1,131 @@
+package banking.services.fx;
+
+import banking.FxRateUnavailableException;
+
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.Map;
+
+/**
+ * Immutable table of FX rates between currencies. Currencies are indexed by their ISO 4217
+ * numeric code and every cross rate is worked out up front, so a lookup is two array reads
+ * and doesn't allocate.
+ */
+public final class FxRates {
+	private static final int NUMERIC_CODES = 1000;
+
+	private final Currency base;
+	private final short[] indexByCode = new short[NUMERIC_CODES];
+	private final double[] rates;
+	private final double[] minorUnitScale;
+	private final int size;
+
+	/**
+	 * Create a rate table
+	 *
+	 * @param base base currency
+	 * @param unitsPerBase units of each currency one unit of the base currency buys
+	 * @throws IllegalArgumentException if a rate isn't positive or a currency has no numeric code
+	 */
+	public FxRates(Currency base, Map<Currency, Double> unitsPerBase) throws IllegalArgumentException {
+		this.base = base;
+		Arrays.fill(indexByCode, (short) -1);
+
+		Currency[] currencies = new Currency[unitsPerBase.size() + 1];
+		double[] perBase = new double[currencies.length];
+		int count = 0;
+		currencies[count] = base;
+		perBase[count] = 1;
+		indexByCode[numericCode(base)] = (short) count++;
+		for (Map.Entry<Currency, Double> rate : unitsPerBase.entrySet()) {
+			if (!(rate.getValue() > 0)) {
+				throw new IllegalArgumentException(String.format("%s rate must be a positive number", rate.getKey()));
+			}
+			if (rate.getKey().equals(base)) {
+				continue;
+			}
+			currencies[count] = rate.getKey();
+			perBase[count] = rate.getValue();
+			indexByCode[numericCode(rate.getKey())] = (short) count++;
+		}
+
+		size = count;
+		rates = new double[size * size];
+		minorUnitScale = new double[size];
+		for (int from = 0; from < size; from++) {
+			for (int to = 0; to < size; to++) {
+				rates[from * size + to] = perBase[to] / perBase[from];
+			}
+			int digits = currencies[from].getDefaultFractionDigits();
+			minorUnitScale[from] = digits < 0 ? 0 : Math.pow(10, digits);	// Pseudo-currencies aren't rounded
+		}
+	}
+
+	private static int numericCode(Currency currency) {
+		int code = currency.getNumericCode();
+		if (code < 0 || code >= NUMERIC_CODES) {
+			throw new IllegalArgumentException(String.format("%s has no numeric code", currency));
+		}
+		return code;
+	}
+
+	/**
+	 * Returns units of the target currency one unit of the source currency buys
+	 *
+	 * @param from source currency
+	 * @param to target currency
+	 * @return rate
+	 * @throws FxRateUnavailableException if there's no rate for either currency
+	 */
+	public double rate(Currency from, Currency to) throws FxRateUnavailableException {
+		if (from == to) {
+			return 1;
+		}
+		return rates[index(from) * size + index(to)];
+	}
+
+	/**
+	 * Convert an amount, rounding half-even to the minor unit of the target currency.
+	 * An amount in the same currency is returned unchanged.
+	 *
+	 * @param amount amount in the source currency
+	 * @param from source currency
+	 * @param to target currency
+	 * @return amount in the target currency
+	 * @throws FxRateUnavailableException if there's no rate for either currency
+	 */
+	public double convert(double amount, Currency from, Currency to) throws FxRateUnavailableException {
+		if (from == to) {
+			return amount;
+		}
+
+		int target = index(to);
+		double converted = amount * rates[index(from) * size + target];
+		double scale = minorUnitScale[target];
+		return scale == 0 ? converted : Math.rint(converted * scale) / scale;
+	}
+
+	/**
+	 * Returns true if the table has rates for the currency
+	 *
+	 * @param currency
+	 * @return
+	 */
+	public boolean supports(Currency currency) {
+		int code = currency.getNumericCode();
+		return code >= 0 && code < NUMERIC_CODES && indexByCode[code] >= 0;
+	}
+
+	public Currency getBase() {
+		return base;
+	}
+
+	private int index(Currency currency) {
+		int code = currency.getNumericCode();
+		int index = code >= 0 && code < NUMERIC_CODES ? indexByCode[code] : -1;
+		if (index < 0) {
+			throw new FxRateUnavailableException(String.format("No FX rate for %s", currency));
+		}
+		return index;
+	}
+}
@@ -0,0 +1,160 @@
+package banking.services.io;
+
+import banking.Account;
+import banking.AccountNumber;
+import banking.Payee;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+
+/**
+ * CSV encoding of an account. Payees follow the fixed columns as sort code, account number,
+ * name and currency groups, the currency empty for payees paid in the account's currency.
+ */
+class AccountCsv {
+	static final String HEADER =
+			"account_number,username,password_hash,type,currency,status,balance,overdraft_balance,last_activity,payees";
+
+	private static final int FIXED_FIELDS = 9;
+
+	private byte[] line = new byte[256];
+	private final List<String> fields = new ArrayList<>();
+
+	/**
+	 * Write the account as one line
+	 *
+	 * @param out
+	 * @param account
+	 * @throws IOException if a field contains a line break
+	 */
+	static void write(Writer out, Account account) throws IOException {
+		synchronized (account) {	// Read a consistent view of the account
+			out.write(account.getAccountNumber().toString());
+			writeField(out, account.getCredentials().getUsername());
+			writeField(out, account.getCredentials().getPasswordHash());
+			writeField(out, account.getAccountType().name());
+			writeField(out, account.getCurrency().getCurrencyCode());
+			writeField(out, account.getStatus().name());
+			writeField(out, Double.toString(account.getBalanceExcludingOverdraft()));
+			writeField(out, Double.toString(account.getOverdraft().getBalance()));
+			writeField(out, Long.toString(account.getLastActivity()));
+			for (Payee payee : account.getPayees()) {
+				writeField(out, payee.getSortCode());
+				writeField(out, payee.getAccountNumber());
+				writeField(out, payee.getPayee());
+				writeField(out, payee.getCurrency() == null ? "" : payee.getCurrency().getCurrencyCode());
+			}
+			out.write('\n');
+		}
+	}
+
+	private static void writeField(Writer out, String value) throws IOException {
+		out.write(',');
+		if (value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+			throw new IOException(String.format("%s contains a line break", value));
+		}
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+			out.write(value);
+			return;
+		}
+
+		out.write('"');
+		out.write(value.replace("\"", "\"\""));
+		out.write('"');
+	}
+
+	/**
+	 * Read the next line of the buffer as an account. The account is not added to the store.
+	 *
+	 * @param in buffer positioned at the start of a line
+	 * @return account
+	 * @throws IOException if the line is malformed
+	 */
+	Account read(ByteBuffer in) throws IOException {
+		int lineStart = in.position();
+		int length = 0;
+		while (in.hasRemaining()) {
+			byte b = in.get();
+			if (b == '\n') {
+				break;
+			}
+			if (length == line.length) {
+				line = Arrays.copyOf(line, length * 2);
+			}
+			line[length++] = b;
+		}
+		if (length > 0 && line[length - 1] == '\r') {
+			length--;
+		}
+
+		split(length);
+		if (fields.size() < FIXED_FIELDS || (fields.size() - FIXED_FIELDS) % 4 != 0) {
+			throw new IOException(String.format("Malformed account at byte %s", lineStart));
+		}
+
+		try {
+			List<Payee> payees = new ArrayList<>((fields.size() - FIXED_FIELDS) / 4);
+			for (int i = FIXED_FIELDS; i < fields.size(); i += 4) {
+				String payeeCurrency = fields.get(i + 3);
+				payees.add(new Payee(fields.get(i), fields.get(i + 1), fields.get(i + 2),
+						payeeCurrency.isEmpty() ? null : Currency.getInstance(payeeCurrency)));
+			}
+			return Account.restore(Account.Credentials.fromHash(fields.get(1), fields.get(2)),
+					Account.AccountType.valueOf(fields.get(3)),
+					Currency.getInstance(fields.get(4)),
+					AccountNumber.parse(fields.get(0)),
+					Account.Status.valueOf(fields.get(5)),
+					Double.parseDouble(fields.get(6)),
+					Double.parseDouble(fields.get(7)),
+					payees,
+					Long.parseLong(fields.get(8)));
+		} catch (IllegalArgumentException e) {
+			throw new IOException(String.format("Malformed account at byte %s", lineStart), e);
+		}
+	}
+
+	private void split(int length) throws IOException {
+		fields.clear();
+		int i = 0;
+		while (true) {
+			if (i < length && line[i] == '"') {
+				StringBuilder value = new StringBuilder();
+				int start = ++i;
+				while (true) {
+					if (i >= length) {
+						throw new IOException("Unterminated quoted field");
+					}
+					if (line[i] == '"') {
+						value.append(new String(line, start, i - start, StandardCharsets.UTF_8));
+						if (i + 1 < length && line[i + 1] == '"') {
+							value.append('"');	// Escaped quote
+							start = i += 2;
+							continue;
+						}
+						i++;
+						break;
+					}
+					i++;
+				}
+				fields.add(value.toString());
+			} else {
+				int start = i;
+				while (i < length && line[i] != ',') {
+					i++;
+				}
+				fields.add(new String(line, start, i - start, StandardCharsets.UTF_8));
+			}
+
+			if (i >= length) {
+				return;
+			}
+			i++;	// Skip the comma
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package banking.services.io;
+
+import banking.Account;
+import banking.AccountNumber;
+import banking.services.AccountCodec;
+import banking.services.AccountStore;
+import banking.services.archive.AccountArchive;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams accounts, with their balances, payees and credential hashes, to a file.
+ * Open holds aren't exported, funds they reserve are available again once imported.
+ */
+public class AccountExporter {
+	static final int MAGIC = 0x42414E4B;	// "BANK"
+	static final int BLOCK_ACCOUNTS = 4096;
+
+	private static final int BUFFER_BYTES = 1 << 16;
+
+	/**
+	 * Export the whole book, live and archived accounts, to a file replacing any existing file.
+	 * Archived accounts are read and written a block at a time rather than loaded together.
+	 * Accounts aren't archived while the export runs, but one restored from the archive
+	 * part way through may be missed, so export while the store isn't in use for an exact copy.
+	 *
+	 * @param file
+	 * @param format
+	 * @return number of accounts exported
+	 * @throws IOException
+	 */
+	public static long exportBook(Path file, BulkFormat format) throws IOException {
+		AccountStore.getSnapshotLock().lock();	// Stops accounts being archived
+		try {
+			AccountArchive archive = AccountStore.getArchive();
+			Collection<Account> live = AccountStore.all();
+			return export(() -> new Iterator<Account>() {
+				private Iterator<Account> current = live.iterator();
+				private boolean archived;
+
+				@Override
+				public boolean hasNext() {
+					if (!current.hasNext() && !archived) {
+						archived = true;	// Read archived accounts once the live ones are written
+						current = readArchive(archive);
+					}
+					return current.hasNext();
+				}
+
+				@Override
+				public Account next() {
+					hasNext();
+					return current.next();
+				}
+			}, file, format);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			AccountStore.getSnapshotLock().unlock();
+		}
+	}
+
+	/**
+	 * Export accounts to a file, replacing any existing file. Accounts are written one at a
+	 * time as the iterator reaches them. {@link banking.services.AccountStore#all()} only
+	 * holds live accounts, use {@link #exportBook(Path, BulkFormat)} to include archived ones.
+	 *
+	 * @param accounts
+	 * @param file
+	 * @param format
+	 * @return number of accounts exported
+	 * @throws IOException
+	 */
+	public static long export(Iterable<Account> accounts, Path file, BulkFormat format) throws IOException {
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_BYTES)) {
+			return format == BulkFormat.CSV ? writeCsv(accounts, out) : writeBinary(accounts, out);
+		}
+	}
+
+	/**
+	 * Read archived accounts a block at a time, the archive is only locked while each block
+	 * is read so accounts can be restored while the export writes the last one
+	 */
+	private static Iterator<Account> readArchive(AccountArchive archive) {
+		if (archive == null) {
+			return Collections.emptyIterator();
+		}
+
+		Iterator<AccountNumber> accountNumbers = archive.accountNumbers().iterator();
+		return new Iterator<Account>() {
+			private Iterator<Account> block = Collections.emptyIterator();
+
+			@Override
+			public boolean hasNext() {
+				while (!block.hasNext() && accountNumbers.hasNext()) {
+					List<AccountNumber> next = new ArrayList<>(BLOCK_ACCOUNTS);
+					while (accountNumbers.hasNext() && next.size() < BLOCK_ACCOUNTS) {
+						next.add(accountNumbers.next());
+					}
+					try {
+						block = archive.read(next).iterator();
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+				return block.hasNext();
+			}
+
+			@Override
+			public Account next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return block.next();
+			}
+		};
+	}
+
+	private static long writeCsv(Iterable<Account> accounts, OutputStream out) throws IOException {
+		Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+		writer.write(AccountCsv.HEADER);
+		writer.write('\n');
+
+		long count = 0;
+		for (Account account : accounts) {
+			AccountCsv.write(writer, account);
+			count++;
+		}
+		writer.flush();
+		return count;
+	}
+
+	private static long writeBinary(Iterable<Account> accounts, OutputStream out) throws IOException {
+		DataOutputStream file = new DataOutputStream(out);
+		file.writeInt(MAGIC);
+
+		ByteArrayOutputStream block = new ByteArrayOutputStream(BUFFER_BYTES);
+		DataOutputStream blockOut = new DataOutputStream(block);
+		long count = 0;
+		int blockCount = 0;
+		for (Account account : accounts) {
+			AccountCodec.write(blockOut, account);
+			count++;
+			if (++blockCount == BLOCK_ACCOUNTS) {
+				writeBlock(file, block, blockCount);
+				blockCount = 0;
+			}
+		}
+		if (blockCount > 0) {
+			writeBlock(file, block, blockCount);
+		}
+		file.flush();
+		return count;
+	}
+
+	private static void writeBlock(DataOutputStream file, ByteArrayOutputStream block, int count) throws IOException {
+		file.writeInt(count);
+		file.writeInt(block.size());
+		block.writeTo(file);
+		block.reset();
+	}
+}
@@ -0,0 +1,176 @@
+package banking.services.io;
+
+import banking.Account;
+import banking.services.AccountCodec;
+import banking.services.AccountStore;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bulk loads accounts exported by {@link AccountExporter} into the account store.
+ */
+public class AccountImporter {
+	static final long CHUNK_BYTES = 32 << 20;
+	static final int BATCH_ACCOUNTS = 4096;
+
+	private static final int SCAN_BYTES = 1 << 13;
+
+	/**
+	 * Load accounts from a file. The file is memory-mapped and split into chunks that are
+	 * parsed in parallel, each chunk adding its accounts to the store in batches. Accounts
+	 * whose account number is already in the store are skipped. If the file is malformed,
+	 * accounts from batches already added stay in the store.
+	 *
+	 * @param file
+	 * @param format
+	 * @return number of accounts added
+	 * @throws IOException if the file can't be read or is malformed
+	 */
+	public static long load(Path file, BulkFormat format) throws IOException {
+		return load(file, format, CHUNK_BYTES);
+	}
+
+	static long load(Path file, BulkFormat format, long chunkBytes) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			List<long[]> chunks = format == BulkFormat.CSV ? csvChunks(channel, chunkBytes) : binaryChunks(channel, chunkBytes);
+			try {
+				return chunks.parallelStream()
+						.mapToLong(chunk -> loadChunk(channel, chunk[0], chunk[1], format))
+						.sum();
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+		}
+	}
+
+	/**
+	 * Split after the header at the first line break past each chunk size
+	 */
+	private static List<long[]> csvChunks(FileChannel channel, long chunkBytes) throws IOException {
+		long size = channel.size();
+		long start = nextLine(channel, 0);
+		if (start < 0) {
+			throw new IOException("Missing CSV header");
+		}
+
+		ByteBuffer header = ByteBuffer.allocate((int) start);
+		channel.read(header, 0);
+		String headerLine = new String(header.array(), StandardCharsets.UTF_8).trim();
+		if (!headerLine.equals(AccountCsv.HEADER)) {
+			throw new IOException(String.format("Unexpected CSV header %s", headerLine));
+		}
+
+		List<long[]> chunks = new ArrayList<>();
+		while (start < size) {
+			long end = start + chunkBytes >= size ? size : nextLine(channel, start + chunkBytes);
+			if (end < 0) {
+				end = size;
+			}
+			chunks.add(new long[] {start, end});
+			start = end;
+		}
+		return chunks;
+	}
+
+	/**
+	 * Returns the position after the next line break at or after the position, or -1 if there isn't one
+	 */
+	private static long nextLine(FileChannel channel, long position) throws IOException {
+		ByteBuffer scan = ByteBuffer.allocate(SCAN_BYTES);
+		while (true) {
+			scan.clear();
+			int read = channel.read(scan, position);
+			if (read < 0) {
+				return -1;
+			}
+			for (int i = 0; i < read; i++) {
+				if (scan.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += read;
+		}
+	}
+
+	/**
+	 * Split at the first block boundary past each chunk size
+	 */
+	private static List<long[]> binaryChunks(FileChannel channel, long chunkBytes) throws IOException {
+		long size = channel.size();
+		ByteBuffer header = ByteBuffer.allocate(8);
+		if (channel.read(header, 0) < 4 || header.getInt(0) != AccountExporter.MAGIC) {
+			throw new IOException("Not an account export");
+		}
+
+		List<long[]> chunks = new ArrayList<>();
+		long start = 4;
+		long position = start;
+		while (position < size) {
+			header.clear();
+			if (channel.read(header, position) < 8) {
+				throw new IOException(String.format("Truncated block at byte %s", position));
+			}
+			int count = header.getInt(0);
+			int length = header.getInt(4);
+			if (count <= 0 || length <= 0) {	// A corrupt length could send the scan backwards forever
+				throw new IOException(String.format("Corrupt block header at byte %s", position));
+			}
+			long next = position + 8 + length;
+			if (next > size) {
+				throw new IOException(String.format("Truncated block at byte %s", position));
+			}
+			position = next;
+			if (position - start >= chunkBytes || position == size) {
+				chunks.add(new long[] {start, position});
+				start = position;
+			}
+		}
+		return chunks;
+	}
+
+	private static long loadChunk(FileChannel channel, long start, long end, BulkFormat format) {
+		try {
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+			List<Account> batch = new ArrayList<>(BATCH_ACCOUNTS);
+			long added = 0;
+
+			if (format == BulkFormat.CSV) {
+				AccountCsv csv = new AccountCsv();
+				while (buffer.hasRemaining()) {
+					batch.add(csv.read(buffer));
+					if (batch.size() == BATCH_ACCOUNTS) {
+						added += flush(batch);
+					}
+				}
+			} else {
+				DataInputStream in = new DataInputStream(new ByteBufferInputStream(buffer));
+				while (buffer.hasRemaining()) {
+					int count = buffer.getInt();
+					buffer.getInt();	// Block length, only needed to find chunks
+					for (int i = 0; i < count; i++) {
+						batch.add(AccountCodec.read(in));
+					}
+					added += flush(batch);
+				}
+			}
+			return added + flush(batch);
+		} catch (IOException e) {
+			throw new UncheckedIOException(new IOException(String.format("%s in chunk at byte %s", e.getMessage(), start), e));
+		}
+	}
+
+	private static int flush(List<Account> batch) {
+		int added = AccountStore.addAll(batch);
+		batch.clear();
+		return added;
+	}
+}
@@ -0,0 +1,18 @@
+package banking.services.io;
+
+/**
+ * File formats for bulk account import and export.
+ */
+public enum BulkFormat {
+	/**
+	 * One account per line, header first. Fields may be quoted but may not contain line
+	 * breaks, so a file can be split into chunks at any newline.
+	 */
+	CSV,
+
+	/**
+	 * Blocks of {@link banking.services.AccountCodec} records, each block prefixed with its
+	 * account count and length in bytes so a file can be split into chunks at any block.
+	 */
+	BINARY
+}
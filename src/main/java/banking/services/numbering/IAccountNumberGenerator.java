@@ -0,0 +1,11 @@
+package banking.services.numbering;
+
+import banking.AccountNumber;
+
+/**
+ * Generates account numbers for newly opened accounts,
+ * allows different numbering schemes to be plugged in
+ */
+public interface IAccountNumberGenerator {
+	AccountNumber next();
+}
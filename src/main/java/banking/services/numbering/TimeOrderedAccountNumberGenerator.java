@@ -0,0 +1,66 @@
+package banking.services.numbering;
+
+import banking.AccountNumber;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Generates compact 64 bit account numbers which sort by the time they were issued.
+ *
+ * Layout: 41 bits milliseconds since 2020-01-01 UTC | 10 bits node | 4 bits lane | 8 bits sequence.
+ * Each thread is given a lane with its own sequence so threads don't share a counter. Nodes
+ * must be given different node IDs to keep numbers unique across a cluster.
+ */
+public class TimeOrderedAccountNumberGenerator implements IAccountNumberGenerator {
+	public static final long EPOCH_MILLIS = 1577836800000L;	// 2020-01-01T00:00:00Z
+	public static final int MAX_NODE_ID = (1 << 10) - 1;
+
+	private static final int LANE_BITS = 4;
+	private static final int SEQUENCE_BITS = 8;
+	private static final int LANES = 1 << LANE_BITS;
+	private static final long SEQUENCE_MASK = (1 << SEQUENCE_BITS) - 1;
+	private static final int PADDING = 8;	// Keep each lane on its own cache line
+
+	private static final AtomicInteger nextLane = new AtomicInteger();
+	private static final ThreadLocal<Integer> threadLane = ThreadLocal.withInitial(() -> nextLane.getAndIncrement() & (LANES - 1));
+
+	private final long node;
+	private final AtomicLongArray lanes = new AtomicLongArray(LANES * PADDING);	// Last issued (millis << 8 | sequence) per lane
+
+	/**
+	 * Create a generator for a node
+	 *
+	 * @param nodeId node ID between 0 and 1023
+	 */
+	public TimeOrderedAccountNumberGenerator(int nodeId) {
+		if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+			throw new IllegalArgumentException(String.format("Node ID must be between 0 and %s", MAX_NODE_ID));
+		}
+		this.node = nodeId;
+	}
+
+	@Override
+	public AccountNumber next() {
+		int lane = threadLane.get();
+		int index = lane * PADDING;
+		long now = System.currentTimeMillis() - EPOCH_MILLIS;
+
+		long last;
+		long issued;
+		do {
+			last = lanes.get(index);
+			long lastMillis = last >>> SEQUENCE_BITS;
+			if (now > lastMillis) {
+				issued = now << SEQUENCE_BITS;	// New millisecond, restart the sequence
+			} else if ((last & SEQUENCE_MASK) < SEQUENCE_MASK) {
+				issued = last + 1;	// Same millisecond (or clock moved back), next sequence
+			} else {
+				issued = (lastMillis + 1) << SEQUENCE_BITS;	// Sequence exhausted, borrow the next millisecond
+			}
+		} while (!lanes.compareAndSet(index, last, issued));
+
+		long millis = issued >>> SEQUENCE_BITS;
+		return AccountNumber.of(millis << 22 | node << 12 | (long) lane << SEQUENCE_BITS | (issued & SEQUENCE_MASK));
+	}
+}
@@ -0,0 +1,16 @@
+package banking.services.numbering;
+
+import banking.AccountNumber;
+
+import java.util.UUID;
+
+/**
+ * Generates random UUID account numbers.
+ * NOTE: UUID.randomUUID() shares one SecureRandom so threads opening accounts contend on it.
+ */
+public class UuidAccountNumberGenerator implements IAccountNumberGenerator {
+	@Override
+	public AccountNumber next() {
+		return AccountNumber.of(UUID.randomUUID());
+	}
+}
@@ -0,0 +1,31 @@
+package banking.services.reconciliation;
+
+import banking.AccountNumber;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * View of a store's state tree, local or held by another process, that a reconciler
+ * can walk by asking for hashes level by level.
+ */
+public interface IStateTreeView {
+	/**
+	 * Returns the hashes of nodes on a level of the tree
+	 *
+	 * @param level level, 0 for the root
+	 * @param indexes node indexes on the level
+	 * @return hashes in the order of the indexes
+	 * @throws IOException if the view couldn't be read
+	 */
+	long[] getHashes(int level, int[] indexes) throws IOException;
+
+	/**
+	 * Returns the state hash of every account in the leaves
+	 *
+	 * @param leaves leaf indexes
+	 * @return state hash by account number
+	 * @throws IOException if the view couldn't be read
+	 */
+	Map<AccountNumber, Long> getAccountHashes(int[] leaves) throws IOException;
+}
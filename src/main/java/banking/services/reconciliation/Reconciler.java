@@ -0,0 +1,69 @@
+package banking.services.reconciliation;
+
+import banking.AccountNumber;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Finds the accounts two stores disagree on by comparing their state trees from the
+ * root down, only descending into nodes whose hashes differ. Stores that mostly agree
+ * exchange a few hashes per divergent account rather than every account.
+ */
+public class Reconciler {
+	/**
+	 * Reconcile two views. Both stores should be quiet while reconciling, accounts
+	 * changed during the walk may be reported as divergent.
+	 *
+	 * @param local
+	 * @param remote
+	 * @return reconciliation
+	 * @throws IOException if either view couldn't be read
+	 */
+	public static Reconciliation reconcile(IStateTreeView local, IStateTreeView remote) throws IOException {
+		int[] differing = {0};
+		long hashesCompared = 0;
+		for (int level = 0; ; level++) {
+			long[] ours = local.getHashes(level, differing);
+			long[] theirs = remote.getHashes(level, differing);
+			hashesCompared += differing.length;
+
+			int count = 0;
+			for (int i = 0; i < differing.length; i++) {
+				if (ours[i] != theirs[i]) {
+					differing[count++] = differing[i];
+				}
+			}
+			if (count == 0) {
+				return new Reconciliation(Collections.emptyList(), hashesCompared, 0);
+			}
+			if (level == StateTree.LEAF_LEVEL) {
+				differing = Arrays.copyOf(differing, count);
+				break;
+			}
+
+			// Descend into the children of the differing nodes
+			int[] children = new int[count * StateTree.FANOUT];
+			for (int i = 0; i < children.length; i++) {
+				children[i] = differing[i / StateTree.FANOUT] * StateTree.FANOUT + i % StateTree.FANOUT;
+			}
+			differing = children;
+		}
+
+		Map<AccountNumber, Long> ours = local.getAccountHashes(differing);
+		Map<AccountNumber, Long> theirs = remote.getAccountHashes(differing);
+		List<AccountNumber> divergent = new ArrayList<>();
+		for (Map.Entry<AccountNumber, Long> account : ours.entrySet()) {
+			if (!account.getValue().equals(theirs.get(account.getKey()))) {
+				divergent.add(account.getKey());
+			}
+		}
+		for (AccountNumber accountNumber : theirs.keySet()) {
+			if (!ours.containsKey(accountNumber)) {
+				divergent.add(accountNumber);
+			}
+		}
+		Collections.sort(divergent);
+		return new Reconciliation(divergent, hashesCompared, differing.length);
+	}
+}
@@ -0,0 +1,51 @@
+package banking.services.reconciliation;
+
+import banking.AccountNumber;
+
+import java.util.List;
+
+/**
+ * Outcome of reconciling two state trees.
+ */
+public class Reconciliation {
+	private final List<AccountNumber> divergent;
+	private final long hashesCompared;
+	private final int leavesCompared;
+
+	Reconciliation(List<AccountNumber> divergent, long hashesCompared, int leavesCompared) {
+		this.divergent = divergent;
+		this.hashesCompared = hashesCompared;
+		this.leavesCompared = leavesCompared;
+	}
+
+	/**
+	 * Returns the accounts missing from one side or in different states, in account number order
+	 *
+	 * @return
+	 */
+	public List<AccountNumber> getDivergent() {
+		return divergent;
+	}
+
+	/**
+	 * Returns the number of node hashes fetched from each side
+	 *
+	 * @return
+	 */
+	public long getHashesCompared() {
+		return hashesCompared;
+	}
+
+	/**
+	 * Returns the number of leaves whose accounts were listed
+	 *
+	 * @return
+	 */
+	public int getLeavesCompared() {
+		return leavesCompared;
+	}
+
+	public boolean isConsistent() {
+		return divergent.isEmpty();
+	}
+}
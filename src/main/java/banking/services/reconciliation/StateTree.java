@@ -0,0 +1,149 @@
+package banking.services.reconciliation;
+
+import banking.AccountNumber;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Merkle tree over the state of every account in the book, keyed by account number.
+ * Each account hashes into one of {@link #LEAVES} buckets whose hash is the sum of its
+ * accounts' state hashes, so an update is a lock free add to one leaf. Internal nodes
+ * hash their {@link #FANOUT} children and are recomputed lazily, only where a leaf
+ * below has changed since they were last read.
+ */
+public class StateTree {
+	public static final int FANOUT = 16;
+	public static final int LEAF_LEVEL = 4;
+	public static final int LEAVES = 1 << (4 * LEAF_LEVEL);
+
+	private static final long SEED = 0x5851F42D4C957F2DL;
+
+	private final AtomicLongArray leaves = new AtomicLongArray(LEAVES);
+	private final long[][] hashes = new long[LEAF_LEVEL][];
+	private final AtomicIntegerArray[] dirty = new AtomicIntegerArray[LEAF_LEVEL];
+
+	public StateTree() {
+		for (int level = 0; level < LEAF_LEVEL; level++) {
+			int width = 1 << (4 * level);
+			hashes[level] = new long[width];
+			dirty[level] = new AtomicIntegerArray(width);
+			for (int i = 0; i < width; i++) {
+				dirty[level].set(i, 1);
+			}
+		}
+	}
+
+	/**
+	 * Returns the leaf an account number hashes into
+	 *
+	 * @param accountNumber
+	 * @return leaf index
+	 */
+	public static int leafOf(AccountNumber accountNumber) {
+		return (accountNumber.hashCode() * 0x9E3779B9) >>> (32 - 4 * LEAF_LEVEL);
+	}
+
+	/**
+	 * Mix a value into a 64 bit hash
+	 *
+	 * @param hash
+	 * @param value
+	 * @return mixed hash
+	 */
+	public static long mix(long hash, long value) {
+		long h = hash ^ value;
+		h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+		h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		return h ^ (h >>> 33);
+	}
+
+	/**
+	 * Add an account's state hash to the tree
+	 *
+	 * @param accountNumber
+	 * @param stateHash
+	 */
+	public void add(AccountNumber accountNumber, long stateHash) {
+		change(accountNumber, stateHash);
+	}
+
+	/**
+	 * Replace an account's state hash
+	 *
+	 * @param accountNumber
+	 * @param oldHash hash added before
+	 * @param newHash
+	 */
+	public void update(AccountNumber accountNumber, long oldHash, long newHash) {
+		change(accountNumber, newHash - oldHash);
+	}
+
+	/**
+	 * Take an account's state hash out of the tree
+	 *
+	 * @param accountNumber
+	 * @param stateHash hash added before
+	 */
+	public void remove(AccountNumber accountNumber, long stateHash) {
+		change(accountNumber, -stateHash);
+	}
+
+	private void change(AccountNumber accountNumber, long delta) {
+		int index = leafOf(accountNumber);
+		leaves.addAndGet(index, delta);
+
+		// Mark the ancestors dirty after the leaf changes, so a read that missed the change recomputes them
+		for (int level = LEAF_LEVEL - 1; level >= 0; level--) {
+			index /= FANOUT;
+			if (dirty[level].get(index) == 0) {	// Avoid writing shared cache lines near the root
+				dirty[level].set(index, 1);
+			}
+		}
+	}
+
+	/**
+	 * Returns the root hash, equal for trees over accounts in the same states
+	 *
+	 * @return
+	 */
+	public long getRootHash() {
+		return getHashes(0, new int[] {0})[0];
+	}
+
+	/**
+	 * Returns the hashes of nodes on a level, the root is on level 0 and leaves on {@link #LEAF_LEVEL}
+	 *
+	 * @param level
+	 * @param indexes node indexes on the level
+	 * @return hashes in the order of the indexes
+	 */
+	public synchronized long[] getHashes(int level, int[] indexes) {
+		long[] result = new long[indexes.length];
+		for (int i = 0; i < indexes.length; i++) {
+			result[i] = hash(level, indexes[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the hash of a node, recomputing it if it's dirty. Must be called holding the lock.
+	 */
+	private long hash(int level, int index) {
+		if (level == LEAF_LEVEL) {
+			return leaves.get(index);
+		}
+		if (dirty[level].get(index) == 0) {
+			return hashes[level][index];
+		}
+
+		dirty[level].set(index, 0);	// Clear before reading the children, a racing update sets it again
+		long hash = SEED;
+		int first = index * FANOUT;
+		for (int i = 0; i < FANOUT; i++) {
+			hash = mix(hash, hash(level + 1, first + i));
+		}
+		hashes[level][index] = hash;
+		return hash;
+	}
+}
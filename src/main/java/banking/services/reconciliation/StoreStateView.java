@@ -0,0 +1,46 @@
+package banking.services.reconciliation;
+
+import banking.Account;
+import banking.AccountNumber;
+import banking.services.AccountStore;
+import banking.services.archive.AccountArchive;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * State tree view of the local account store, including archived accounts.
+ */
+public class StoreStateView implements IStateTreeView {
+	@Override
+	public long[] getHashes(int level, int[] indexes) {
+		return AccountStore.getStateTree().getHashes(level, indexes);
+	}
+
+	/**
+	 * Scans the store once in parallel for accounts in the leaves, then reads any
+	 * archived ones back from the archive.
+	 */
+	@Override
+	public Map<AccountNumber, Long> getAccountHashes(int[] leaves) throws IOException {
+		BitSet wanted = new BitSet(StateTree.LEAVES);
+		for (int leaf : leaves) {
+			wanted.set(leaf);
+		}
+
+		Map<AccountNumber, Long> hashes = AccountStore.all()
+				.parallelStream()
+				.filter(account -> wanted.get(StateTree.leafOf(account.getAccountNumber())))
+				.collect(Collectors.toConcurrentMap(Account::getAccountNumber, Account::getStateHash));
+
+		AccountArchive archive = AccountStore.getArchive();
+		if (archive != null) {
+			for (Account account : archive.read(accountNumber -> wanted.get(StateTree.leafOf(accountNumber)))) {
+				hashes.put(account.getAccountNumber(), account.getStateHash());
+			}
+		}
+		return hashes;
+	}
+}
@@ -0,0 +1,38 @@
+package banking.services.reporting;
+
+import banking.services.AccountStore;
+import banking.services.archive.AccountArchive;
+
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Book-wide reporting over every account in the store.
+ */
+public class BookReporter {
+	/**
+	 * Summarise the book as of now, including archived accounts. Accounts are
+	 * read in parallel, each fork-join task totalling its own part of the store
+	 * before the parts are combined. Writers carry on while the report runs;
+	 * changes they make after the report began are not included.
+	 *
+	 * @return book summary
+	 */
+	public static BookSummary summarise() {
+		// One snapshot at a time, an account preserves state for the latest snapshot only
+		Lock snapshotLock = AccountStore.getSnapshotLock();
+		snapshotLock.lock();
+		try {
+			BookSummary archived = new BookSummary();
+			AccountArchive archive = AccountStore.getArchive();
+			long epoch = archive != null ? archive.beginSnapshot(archived) : AccountStore.beginSnapshot();
+
+			BookSummary summary = AccountStore.all()
+					.parallelStream()
+					.collect(BookSummary::new, (part, account) -> account.visitState(epoch, part), BookSummary::combine);
+			summary.combine(archived);
+			return summary;
+		} finally {
+			snapshotLock.unlock();
+		}
+	}
+}
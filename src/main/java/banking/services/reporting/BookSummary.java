@@ -0,0 +1,121 @@
+package banking.services.reporting;
+
+import banking.Account;
+
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Book-wide totals per currency and counts as of a point in time.
+ */
+public class BookSummary implements Account.StateVisitor {
+	private static final int TYPES = Account.AccountType.values().length;
+	private static final int STATUSES = Account.Status.values().length;
+
+	private final long[] countByType = new long[TYPES];
+	private final long[] countByStatus = new long[STATUSES];
+	private long accountCount;
+	private final Map<Currency, double[]> totalsByCurrency = new HashMap<>();	// Deposits, overdraft exposure
+
+	@Override
+	public void visit(Account account, double balance, double overdraftBalance, Account.Status status) {
+		double[] totals = totals(account.getCurrency());
+		if (balance > 0) {
+			totals[0] += balance;
+		}
+		totals[1] -= overdraftBalance;	// Overdraft balances are zero or negative
+		countByType[account.getAccountType().ordinal()]++;
+		countByStatus[status.ordinal()]++;
+		accountCount++;
+	}
+
+	/**
+	 * Take an account back out of the summary
+	 *
+	 * @param account
+	 * @param balance balance excluding the overdraft
+	 * @param overdraftBalance
+	 * @param status
+	 */
+	public void subtract(Account account, double balance, double overdraftBalance, Account.Status status) {
+		double[] totals = totals(account.getCurrency());
+		if (balance > 0) {
+			totals[0] -= balance;
+		}
+		totals[1] += overdraftBalance;
+		countByType[account.getAccountType().ordinal()]--;
+		countByStatus[status.ordinal()]--;
+		accountCount--;
+	}
+
+	/**
+	 * Fold the totals of another part of the book into this summary
+	 *
+	 * @param other
+	 */
+	public void combine(BookSummary other) {
+		for (int i = 0; i < TYPES; i++) {
+			countByType[i] += other.countByType[i];
+		}
+		for (int i = 0; i < STATUSES; i++) {
+			countByStatus[i] += other.countByStatus[i];
+		}
+		accountCount += other.accountCount;
+		for (Map.Entry<Currency, double[]> entry : other.totalsByCurrency.entrySet()) {
+			double[] totals = totals(entry.getKey());
+			totals[0] += entry.getValue()[0];
+			totals[1] += entry.getValue()[1];
+		}
+	}
+
+	private double[] totals(Currency currency) {
+		return totalsByCurrency.computeIfAbsent(currency, c -> new double[2]);
+	}
+
+	/**
+	 * Returns the total of positive balances, excluding overdrafts, of accounts held in a currency.
+	 * Totals are kept per currency, amounts in different currencies can't be added.
+	 *
+	 * @param currency
+	 * @return
+	 */
+	public double getTotalDeposits(Currency currency) {
+		double[] totals = totalsByCurrency.get(currency);
+		return totals == null ? 0 : totals[0];
+	}
+
+	/**
+	 * Returns the total owed on overdrafts of accounts held in a currency
+	 *
+	 * @param currency
+	 * @return
+	 */
+	public double getTotalOverdraftExposure(Currency currency) {
+		double[] totals = totalsByCurrency.get(currency);
+		return totals == null ? 0 : totals[1];
+	}
+
+	/**
+	 * Returns the currencies accounts in the summary are held in
+	 *
+	 * @return
+	 */
+	public Set<Currency> getCurrencies() {
+		return Collections.unmodifiableSet(totalsByCurrency.keySet());
+	}
+
+	public long getCount(Account.AccountType type) {
+		return countByType[type.ordinal()];
+	}
+
+	public long getCount(Account.Status status) {
+		return countByStatus[status.ordinal()];
+	}
+
+	public long getAccountCount() {
+		return accountCount;
+	}
+}
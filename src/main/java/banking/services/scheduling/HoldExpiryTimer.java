@@ -0,0 +1,114 @@
+package banking.services.scheduling;
+
+import banking.Hold;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timer expiring holds, shared by all accounts. Holds are kept in one
+ * {@link TimingWheel} rather than a timer per hold. The background thread
+ * expiring them is started when the first hold is scheduled.
+ */
+public class HoldExpiryTimer {
+	public static final long TICK_MILLIS = 1000;
+
+	private static TimingWheel<Hold> wheel = newWheel();
+	private static ScheduledExecutorService executor;
+
+	/**
+	 * Add a hold to expire at its expiry time
+	 *
+	 * @param hold
+	 */
+	public static synchronized void schedule(Hold hold) {
+		wheel.add(hold, (hold.getExpiresAtMillis() + TICK_MILLIS - 1) / TICK_MILLIS);	// Round up so holds never expire early
+		start();
+	}
+
+	/**
+	 * Remove a hold which has been captured or released
+	 *
+	 * @param hold
+	 */
+	public static synchronized void cancel(Hold hold) {
+		wheel.cancel(hold);
+	}
+
+	/**
+	 * Expire all holds due to expire by the time given
+	 *
+	 * @param nowMillis
+	 * @return number of holds expired
+	 */
+	public static int expireDue(long nowMillis) {
+		List<Hold> due = new ArrayList<>();
+		synchronized (HoldExpiryTimer.class) {
+			wheel.advanceTo(nowMillis / TICK_MILLIS, due::add);
+		}
+
+		// Release outside the timer lock, accounts call back into the timer holding their own lock
+		for (Hold hold : due) {
+			hold.getAccount().expire(hold);
+		}
+		return due.size();
+	}
+
+	/**
+	 * Returns the number of holds waiting to expire
+	 *
+	 * @return
+	 */
+	public static synchronized int size() {
+		return wheel.size();
+	}
+
+	/**
+	 * Start expiring holds on a background thread every tick
+	 */
+	public static synchronized void start() {
+		if (executor == null) {
+			executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "hold-expiry");
+				thread.setDaemon(true);
+				return thread;
+			});
+			executor.scheduleAtFixedRate(() -> expireDue(System.currentTimeMillis()), TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Returns true if holds are being expired on a background thread
+	 *
+	 * @return
+	 */
+	public static synchronized boolean isRunning() {
+		return executor != null;
+	}
+
+	/**
+	 * Stop expiring holds
+	 */
+	public static synchronized void stop() {
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+	}
+
+	/**
+	 * Stop expiring holds and forget all scheduled holds, restarting the wheel at the current time.
+	 * Accounts holding the forgotten holds must not be used afterwards, e.g. after {@link banking.services.AccountStore#deleteAll()}.
+	 */
+	public static synchronized void deleteAll() {
+		stop();
+		wheel = newWheel();
+	}
+
+	private static TimingWheel<Hold> newWheel() {
+		return new TimingWheel<>(System.currentTimeMillis() / TICK_MILLIS);
+	}
+}
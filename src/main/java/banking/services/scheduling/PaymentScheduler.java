@@ -0,0 +1,249 @@
+package banking.services.scheduling;
+
+import banking.Account;
+import banking.AccountNumber;
+import banking.InsufficientFundsException;
+import banking.PayeeNotFoundException;
+import banking.services.AccountStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scheduler for future dated payments and standing orders to registered payees.
+ *
+ * Payments are held in a {@link TimingWheel}. Each account's payments are spread over
+ * a window after their due time so payments due at the same time (e.g. midnight) don't
+ * all run at once, and payments that come due together are made in one batch per account.
+ */
+public class PaymentScheduler {
+	private final long tickMillis;
+	private final long spreadMillis;
+	private final int capacity;
+	private final TimingWheel<ScheduledPayment> wheel;
+	private final AtomicLong executedCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+	private ScheduledExecutorService executor;
+
+	/**
+	 * Create a scheduler
+	 *
+	 * @param tickMillis resolution of the scheduler in milliseconds
+	 * @param spreadWindowMillis window after the due time payments are spread over, 0 to run on time
+	 * @param capacity maximum number of scheduled payments
+	 */
+	public PaymentScheduler(long tickMillis, long spreadWindowMillis, int capacity) {
+		if (tickMillis <= 0) {
+			throw new IllegalArgumentException("Tick must be a positive number");
+		}
+
+		this.tickMillis = tickMillis;
+		this.spreadMillis = spreadWindowMillis;
+		this.capacity = capacity;
+		this.wheel = new TimingWheel<>(System.currentTimeMillis() / tickMillis);
+	}
+
+	/**
+	 * Schedule a one off payment
+	 *
+	 * @param accountNumber account to pay from
+	 * @param payeeName registered payee to pay
+	 * @param value
+	 * @param dueMillis time the payment is due in milliseconds
+	 * @return scheduled payment, used to cancel it
+	 * @throws IllegalArgumentException
+	 */
+	public ScheduledPayment schedule(AccountNumber accountNumber, String payeeName, double value, long dueMillis) throws IllegalArgumentException {
+		return add(new ScheduledPayment(accountNumber, payeeName, value, dueMillis, 0));
+	}
+
+	/**
+	 * Schedule a standing order, repeating until cancelled
+	 *
+	 * @param accountNumber account to pay from
+	 * @param payeeName registered payee to pay
+	 * @param value
+	 * @param firstDueMillis time the first payment is due in milliseconds
+	 * @param interval time between payments
+	 * @param unit unit of the interval
+	 * @return scheduled payment, used to cancel it
+	 * @throws IllegalArgumentException
+	 */
+	public ScheduledPayment scheduleRecurring(AccountNumber accountNumber, String payeeName, double value,
+											  long firstDueMillis, long interval, TimeUnit unit) throws IllegalArgumentException {
+		if (interval <= 0) {
+			throw new IllegalArgumentException("Interval must be a positive number");
+		}
+		return add(new ScheduledPayment(accountNumber, payeeName, value, firstDueMillis, unit.toMillis(interval)));
+	}
+
+	/**
+	 * Cancel a scheduled payment or standing order
+	 *
+	 * @param payment
+	 * @return true if the payment was waiting to be made
+	 */
+	public synchronized boolean cancel(ScheduledPayment payment) {
+		payment.cancel();	// Stops a standing order being made again if it's being paid right now
+		return wheel.cancel(payment);
+	}
+
+	/**
+	 * Make all payments due by the time given. Payments from the same account
+	 * are made together, taking the account lock once.
+	 *
+	 * @param nowMillis
+	 * @return number of payments made
+	 */
+	public int runDue(long nowMillis) {
+		List<ScheduledPayment> due = new ArrayList<>();
+		synchronized (this) {
+			wheel.advanceTo(nowMillis / tickMillis, due::add);
+		}
+		if (due.isEmpty()) {
+			return 0;
+		}
+
+		due.sort((a, b) -> a.getAccountNumber().compareTo(b.getAccountNumber()));	// Group payments by account
+		int made = 0;
+		try {
+			int start = 0;
+			while (start < due.size()) {
+				AccountNumber accountNumber = due.get(start).getAccountNumber();
+				int end = start + 1;
+				while (end < due.size() && due.get(end).getAccountNumber().equals(accountNumber)) {
+					end++;
+				}
+				made += pay(accountNumber, due.subList(start, end));
+				start = end;
+			}
+		} finally {
+			// Standing orders carry on whatever happened to this run's payments
+			synchronized (this) {
+				for (ScheduledPayment payment : due) {
+					if (payment.isRecurring() && !payment.isCancelled()) {
+						payment.advance();
+						wheel.add(payment, deadline(payment));
+					}
+				}
+			}
+		}
+		return made;
+	}
+
+	/**
+	 * Start running due payments on a background thread every tick
+	 */
+	public synchronized void start() {
+		if (executor != null) {
+			throw new IllegalStateException("Scheduler already started");
+		}
+
+		executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "payment-scheduler");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.scheduleAtFixedRate(() -> {
+			try {
+				runDue(System.currentTimeMillis());
+			} catch (RuntimeException e) {
+				e.printStackTrace();	// Keep running, an exception would cancel the task for good
+			}
+		}, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stop running due payments
+	 */
+	public synchronized void stop() {
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+	}
+
+	/**
+	 * Returns the number of payments waiting to be made
+	 *
+	 * @return
+	 */
+	public synchronized int size() {
+		return wheel.size();
+	}
+
+	public long getExecutedCount() {
+		return executedCount.get();
+	}
+
+	/**
+	 * Returns the number of payments which could not be made, e.g. the payee was no longer registered
+	 * or the payment was over a velocity limit
+	 *
+	 * @return
+	 */
+	public long getFailedCount() {
+		return failedCount.get();
+	}
+
+	private ScheduledPayment add(ScheduledPayment payment) {
+		if (!(payment.getAmount() >= 0) || Double.isInfinite(payment.getAmount())) {
+			throw new IllegalArgumentException("Payment amount must be a positive number");
+		}
+
+		synchronized (this) {
+			if (wheel.size() >= capacity) {
+				throw new IllegalStateException("Payment scheduler is full");
+			}
+			wheel.add(payment, deadline(payment));
+		}
+		return payment;
+	}
+
+	private int pay(AccountNumber accountNumber, List<ScheduledPayment> payments) {
+		Account account;
+		try {
+			account = AccountStore.getByAccountNumber(accountNumber);
+		} catch (RuntimeException e) {	// e.g. the archive couldn't be read
+			account = null;
+		}
+		if (account == null) {
+			failedCount.addAndGet(payments.size());
+			return 0;
+		}
+
+		int made = 0;
+		synchronized (account) {	// One lock for the account's whole batch
+			for (ScheduledPayment payment : payments) {
+				if (payment.isCancelled()) {
+					continue;
+				}
+				try {
+					account.makePayment(payment.getPayeeName(), payment.getAmount());
+					made++;
+				} catch (PayeeNotFoundException | InsufficientFundsException | RuntimeException e) {
+					failedCount.incrementAndGet();	// e.g. over a velocity limit, the account's other payments are still made
+				}
+			}
+		}
+		executedCount.addAndGet(made);
+		return made;
+	}
+
+	/**
+	 * Returns the tick to make the payment at, spread over the window by account
+	 * so an account's payments due together are still made together.
+	 */
+	private long deadline(ScheduledPayment payment) {
+		long runAt = payment.getDueMillis();
+		if (spreadMillis > 0) {
+			int h = payment.getAccountNumber().hashCode() * 0x9E3779B9;
+			runAt += Math.floorMod(h ^ (h >>> 16), spreadMillis);
+		}
+		return (runAt + tickMillis - 1) / tickMillis;	// Round up so payments are never made early
+	}
+}
@@ -0,0 +1,69 @@
+package banking.services.scheduling;
+
+import banking.AccountNumber;
+
+/**
+ * Payment to a registered payee scheduled for a future date, repeating at a
+ * fixed interval for standing orders.
+ */
+public class ScheduledPayment extends TimingWheel.Entry {
+	private final AccountNumber accountNumber;
+	private final String payeeName;
+	private final double amount;
+	private final long intervalMillis;
+	private long dueMillis;
+	private boolean cancelled;
+
+	ScheduledPayment(AccountNumber accountNumber, String payeeName, double amount, long dueMillis, long intervalMillis) {
+		this.accountNumber = accountNumber;
+		this.payeeName = payeeName;
+		this.amount = amount;
+		this.dueMillis = dueMillis;
+		this.intervalMillis = intervalMillis;
+	}
+
+	public AccountNumber getAccountNumber() {
+		return accountNumber;
+	}
+
+	public String getPayeeName() {
+		return payeeName;
+	}
+
+	public double getAmount() {
+		return amount;
+	}
+
+	/**
+	 * Returns the time the next payment is due in milliseconds
+	 *
+	 * @return
+	 */
+	public synchronized long getDueMillis() {
+		return dueMillis;
+	}
+
+	/**
+	 * Returns true for standing orders which repeat after each payment
+	 *
+	 * @return
+	 */
+	public boolean isRecurring() {
+		return intervalMillis > 0;
+	}
+
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+
+	synchronized void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Move a standing order on to its next due date
+	 */
+	synchronized void advance() {
+		dueMillis += intervalMillis;
+	}
+}
@@ -0,0 +1,185 @@
+package banking.services.scheduling;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel. Each level has 64 slots, a slot on level n covering
+ * 64^n ticks; entries are moved down a level as their deadline approaches.
+ * Adding and cancelling an entry is O(1). Entries are linked into the wheel
+ * directly, so an entry can only be in one wheel at a time.
+ *
+ * NOTE: Not thread safe, callers must synchronize access to the wheel.
+ *
+ * @param <E> entry type
+ */
+public class TimingWheel<E extends TimingWheel.Entry> {
+	private static final int SLOT_BITS = 6;
+	private static final int SLOTS = 1 << SLOT_BITS;
+	private static final int SLOT_MASK = SLOTS - 1;
+	private static final int LEVELS = 6;	// 64^6 ticks, e.g. over 2 years at one second per tick
+	private static final long MAX_DELAY = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+	private final Entry[][] wheels = new Entry[LEVELS][SLOTS];	// Sentinel of each slot's circular list
+	private long currentTick;
+	private int size;
+
+	/**
+	 * Create a wheel
+	 *
+	 * @param startTick tick the wheel starts at
+	 */
+	public TimingWheel(long startTick) {
+		this.currentTick = startTick;
+		for (Entry[] wheel : wheels) {
+			for (int slot = 0; slot < SLOTS; slot++) {
+				Entry sentinel = new Entry();
+				sentinel.next = sentinel;
+				sentinel.previous = sentinel;
+				wheel[slot] = sentinel;
+			}
+		}
+	}
+
+	/**
+	 * Add an entry to fire at the deadline. Deadlines that have already passed fire on the next tick.
+	 *
+	 * @param entry entry not already in a wheel
+	 * @param deadlineTick
+	 */
+	public void add(E entry, long deadlineTick) {
+		Entry e = entry;
+		if (e.isScheduled()) {
+			throw new IllegalStateException("Entry is already scheduled");
+		}
+
+		e.deadline = deadlineTick;
+		link(e, currentTick + 1);
+		size++;
+	}
+
+	/**
+	 * Remove an entry before it fires
+	 *
+	 * @param entry
+	 * @return true if the entry was removed, false if it was not scheduled
+	 */
+	public boolean cancel(E entry) {
+		Entry e = entry;
+		if (!e.isScheduled()) {
+			return false;
+		}
+
+		e.unlink();
+		size--;
+		return true;
+	}
+
+	/**
+	 * Advance the wheel up to and including the tick, passing each entry whose
+	 * deadline is reached to the consumer. Entries are no longer scheduled when
+	 * passed to the consumer so they can be added again.
+	 *
+	 * @param tick
+	 * @param expired
+	 */
+	@SuppressWarnings("unchecked")
+	public void advanceTo(long tick, Consumer<E> expired) {
+		while (currentTick < tick) {
+			currentTick++;
+
+			// Move entries down from higher levels when the level below wraps
+			for (int level = 1; level < LEVELS && (currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0; level++) {
+				cascade(level, (int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+			}
+
+			Entry sentinel = wheels[0][(int) currentTick & SLOT_MASK];
+			while (sentinel.next != sentinel) {
+				Entry entry = sentinel.next;
+				entry.unlink();
+				size--;
+				expired.accept((E) entry);
+			}
+		}
+	}
+
+	/**
+	 * Returns the tick the wheel has advanced to
+	 *
+	 * @return
+	 */
+	public long getCurrentTick() {
+		return currentTick;
+	}
+
+	/**
+	 * Returns the number of scheduled entries
+	 *
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	private void cascade(int level, int slot) {
+		Entry sentinel = wheels[level][slot];
+		while (sentinel.next != sentinel) {
+			Entry entry = sentinel.next;
+			entry.unlink();
+			link(entry, currentTick);	// Entries due now go in the slot about to be expired
+		}
+	}
+
+	private void link(Entry entry, long earliestTick) {
+		long tick = Math.max(entry.deadline, earliestTick);	// Already due, fire at the earliest tick
+		long delay = tick - currentTick;
+		if (delay > MAX_DELAY) {
+			tick = currentTick + MAX_DELAY;	// Park on the top level, it's placed again when that slot cascades
+			delay = MAX_DELAY;
+		}
+
+		int level = 0;
+		while (level < LEVELS - 1 && delay >= (long) SLOTS << (SLOT_BITS * level)) {
+			level++;
+		}
+		Entry sentinel = wheels[level][(int) (tick >>> (SLOT_BITS * level)) & SLOT_MASK];
+
+		entry.previous = sentinel.previous;
+		entry.next = sentinel;
+		sentinel.previous.next = entry;
+		sentinel.previous = entry;
+	}
+
+	/**
+	 * Entry in a timing wheel, extended by the scheduled item so no separate node is allocated.
+	 */
+	public static class Entry {
+		private long deadline;
+		private Entry previous;
+		private Entry next;
+
+		/**
+		 * Returns the tick the entry is due at
+		 *
+		 * @return
+		 */
+		public long getDeadline() {
+			return deadline;
+		}
+
+		/**
+		 * Returns true if the entry is in a wheel
+		 *
+		 * @return
+		 */
+		public boolean isScheduled() {
+			return next != null;
+		}
+
+		private void unlink() {
+			previous.next = next;
+			next.previous = previous;
+			previous = null;
+			next = null;
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package banking.services.velocity;
+
+import banking.VelocityLimitExceededException;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sliding window counts and totals of an account's withdrawals and payments.
+ *
+ * Each window is a ring of buckets held in one array. A bucket packs the bucket
+ * number it's counting (20 bits), the count (12 bits) and the total in cents
+ * (32 bits) into a single long, so it's updated with one compare-and-set and
+ * a bucket left over from an earlier lap of the ring is recognised and reset.
+ * Counts and totals saturate rather than overflow, which can only trip a limit early.
+ */
+public class VelocityCounter {
+	private static final VelocityWindow[] WINDOWS = VelocityWindow.values();
+	private static final int TAG_SHIFT = 44;
+	private static final long TAG_MASK = (1L << 20) - 1;
+	private static final int COUNT_SHIFT = 32;
+	private static final long COUNT_MASK = (1L << 12) - 1;
+	private static final long CENTS_MASK = (1L << 32) - 1;
+
+	private final AtomicLongArray buckets;
+	private final int[] offsets = new int[WINDOWS.length];
+
+	public VelocityCounter() {
+		int size = 0;
+		for (VelocityWindow window : WINDOWS) {
+			offsets[window.ordinal()] = size;
+			size += window.getBuckets();
+		}
+		buckets = new AtomicLongArray(size);
+	}
+
+	/**
+	 * Check a withdrawal or payment would stay within the limits
+	 *
+	 * @param value
+	 * @param limits
+	 * @param nowMillis
+	 * @throws VelocityLimitExceededException
+	 */
+	public void check(double value, VelocityLimit[] limits, long nowMillis) throws VelocityLimitExceededException {
+		long cents = toCents(value);
+		for (VelocityLimit limit : limits) {
+			VelocityWindow window = limit.getWindow();
+			long current = nowMillis / window.getBucketMillis();
+			int offset = offsets[window.ordinal()];
+			long count = 0;
+			long total = 0;
+			for (int i = 0; i < window.getBuckets(); i++) {
+				long bucket = buckets.get(offset + i);
+				if (((current - (bucket >>> TAG_SHIFT)) & TAG_MASK) < window.getBuckets()) {	// Bucket is within the window
+					count += (bucket >>> COUNT_SHIFT) & COUNT_MASK;
+					total += bucket & CENTS_MASK;
+				}
+			}
+
+			if (count + 1 > limit.getMaxCount() || total + cents > limit.getMaxAmountCents()) {
+				throw new VelocityLimitExceededException(String.format("%s velocity limit exceeded", window));
+			}
+		}
+	}
+
+	/**
+	 * Count a withdrawal or payment in every window
+	 *
+	 * @param value
+	 * @param nowMillis
+	 */
+	public void record(double value, long nowMillis) {
+		long cents = toCents(value);
+		for (VelocityWindow window : WINDOWS) {
+			long current = nowMillis / window.getBucketMillis();
+			int index = offsets[window.ordinal()] + (int) (current % window.getBuckets());
+			long tag = current & TAG_MASK;
+
+			long bucket;
+			long updated;
+			do {
+				bucket = buckets.get(index);
+				long count = 0;
+				long total = 0;
+				if ((bucket >>> TAG_SHIFT) == tag) {	// Still the current bucket, otherwise start it again
+					count = (bucket >>> COUNT_SHIFT) & COUNT_MASK;
+					total = bucket & CENTS_MASK;
+				}
+				count = Math.min(count + 1, COUNT_MASK);
+				total = Math.min(total + cents, CENTS_MASK);
+				updated = tag << TAG_SHIFT | count << COUNT_SHIFT | total;
+			} while (!buckets.compareAndSet(index, bucket, updated));
+		}
+	}
+
+	static long toCents(double value) {
+		return Math.round(value * 100);
+	}
+}
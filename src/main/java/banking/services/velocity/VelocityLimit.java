@@ -0,0 +1,43 @@
+package banking.services.velocity;
+
+/**
+ * Limit on the number and total value of withdrawals and payments over a window.
+ */
+public class VelocityLimit {
+	private final VelocityWindow window;
+	private final int maxCount;
+	private final long maxAmountCents;
+
+	/**
+	 * Create a limit
+	 *
+	 * @param window window the limit applies over
+	 * @param maxCount maximum number of withdrawals and payments in the window
+	 * @param maxAmount maximum total value of withdrawals and payments in the window
+	 */
+	public VelocityLimit(VelocityWindow window, int maxCount, double maxAmount) {
+		if (maxCount < 0 || maxAmount < 0) {
+			throw new IllegalArgumentException("Velocity limits must be positive numbers");
+		}
+
+		this.window = window;
+		this.maxCount = maxCount;
+		this.maxAmountCents = VelocityCounter.toCents(maxAmount);
+	}
+
+	public VelocityWindow getWindow() {
+		return window;
+	}
+
+	public int getMaxCount() {
+		return maxCount;
+	}
+
+	public double getMaxAmount() {
+		return maxAmountCents / 100D;
+	}
+
+	long getMaxAmountCents() {
+		return maxAmountCents;
+	}
+}
@@ -0,0 +1,39 @@
+package banking.services.velocity;
+
+import banking.Account;
+
+/**
+ * Velocity limits for each account type. Account types without limits are not checked.
+ */
+public class VelocityRules {
+	private static volatile VelocityLimit[][] limitsByType = new VelocityLimit[Account.AccountType.values().length][];
+
+	/**
+	 * Set the limits for an account type, replacing any existing limits
+	 *
+	 * @param type
+	 * @param limits limits to apply, none to stop checking the account type
+	 */
+	public static synchronized void setLimits(Account.AccountType type, VelocityLimit... limits) {
+		VelocityLimit[][] updated = limitsByType.clone();	// Copy so readers never lock
+		updated[type.ordinal()] = limits.length == 0 ? null : limits.clone();
+		limitsByType = updated;
+	}
+
+	/**
+	 * Returns the limits for an account type
+	 *
+	 * @param type
+	 * @return limits, or null if the account type has none
+	 */
+	public static VelocityLimit[] getLimits(Account.AccountType type) {
+		return limitsByType[type.ordinal()];
+	}
+
+	/**
+	 * Delete all limits.
+	 */
+	public static synchronized void deleteAll() {
+		limitsByType = new VelocityLimit[Account.AccountType.values().length][];
+	}
+}
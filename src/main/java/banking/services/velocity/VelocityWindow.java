@@ -0,0 +1,29 @@
+package banking.services.velocity;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sliding windows velocity limits apply over. Each window is split into buckets,
+ * so the window slides a bucket at a time.
+ */
+public enum VelocityWindow {
+	MINUTE(TimeUnit.SECONDS.toMillis(5), 12),
+	HOUR(TimeUnit.MINUTES.toMillis(5), 12),
+	DAY(TimeUnit.HOURS.toMillis(1), 24);
+
+	private final long bucketMillis;
+	private final int buckets;
+
+	VelocityWindow(long bucketMillis, int buckets) {
+		this.bucketMillis = bucketMillis;
+		this.buckets = buckets;
+	}
+
+	public long getBucketMillis() {
+		return bucketMillis;
+	}
+
+	public int getBuckets() {
+		return buckets;
+	}
+}
@@ -0,0 +1,149 @@
+package banking.workload;
+
+import banking.Account;
+import banking.services.fx.FxRateStore;
+import banking.services.fx.FxRates;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures the cost of FX conversion: conversions between random pairs of every currency with
+ * a numeric code, then payments to a payee in the account's currency compared with payments to
+ * a payee in EUR. Optionally a new rate table is published every few milliseconds while it runs.
+ *
+ * Run with {@code ./gradlew fxBenchmark -Pargs="conversions=50000000 payments=5000000 publishMillis=1"}.
+ */
+public class FxBenchmark {
+	private static final int PAIRS = 1 << 16;
+
+	public static void main(String[] args) throws Exception {
+		long conversions = 50_000_000;
+		long payments = 5_000_000;
+		int publishMillis = 0;
+		for (String arg : args) {
+			int separator = arg.indexOf('=');
+			if (separator < 0) {
+				throw new IllegalArgumentException("Expected key=value: " + arg);
+			}
+			String value = arg.substring(separator + 1);
+			switch (arg.substring(0, separator)) {
+				case "conversions": conversions = Long.parseLong(value); break;
+				case "payments": payments = Long.parseLong(value); break;
+				case "publishMillis": publishMillis = Integer.parseInt(value); break;
+				default: throw new IllegalArgumentException("Unknown setting: " + arg);
+			}
+		}
+
+		List<Currency> currencies = new ArrayList<>();
+		for (Currency currency : Currency.getAvailableCurrencies()) {
+			if (currency.getNumericCode() > 0 && currency.getNumericCode() < 1000) {
+				currencies.add(currency);
+			}
+		}
+		SplittableRandom random = new SplittableRandom(1);
+		FxRates[] tables = { newRates(currencies, random), newRates(currencies, random) };	// Built up front, publishing only swaps
+		FxRateStore.publish(tables[0]);
+
+		AtomicBoolean running = new AtomicBoolean(true);
+		Thread publisher = null;
+		if (publishMillis > 0) {
+			long intervalNanos = publishMillis * 1_000_000L;
+			publisher = new Thread(() -> {
+				for (int i = 1; running.get(); i++) {
+					LockSupport.parkNanos(intervalNanos);
+					FxRateStore.publish(tables[i & 1]);
+				}
+			}, "fx-publisher");
+			publisher.setDaemon(true);
+			publisher.start();
+		}
+		System.out.printf("%d currencies, %s%n", currencies.size(),
+				publishMillis > 0 ? String.format("new rate table every %dms", publishMillis) : "rate table unchanged");
+
+		try {
+			measureConversions(currencies, random, conversions);
+			measurePayments(Currency.getInstance("EUR"), payments);
+		} finally {
+			running.set(false);
+			if (publisher != null) {
+				publisher.join();
+			}
+		}
+	}
+
+	private static FxRates newRates(List<Currency> currencies, SplittableRandom random) {
+		Map<Currency, Double> unitsPerBase = new HashMap<>();
+		for (Currency currency : currencies) {
+			unitsPerBase.put(currency, 0.01 + random.nextDouble() * 100);
+		}
+		return new FxRates(Account.DEFAULT_CURRENCY, unitsPerBase);
+	}
+
+	private static void measureConversions(List<Currency> currencies, SplittableRandom random, long conversions) {
+		Currency[] from = new Currency[PAIRS];
+		Currency[] to = new Currency[PAIRS];
+		double[] amounts = new double[PAIRS];
+		for (int i = 0; i < PAIRS; i++) {
+			from[i] = currencies.get(random.nextInt(currencies.size()));
+			to[i] = currencies.get(random.nextInt(currencies.size()));
+			amounts[i] = random.nextInt(100_000) / 100.0;
+		}
+
+		for (int round = 0; round < 3; round++) {	// First rounds warm up the JIT
+			double sink = 0;
+			long allocated = allocatedBytes();
+			long start = System.nanoTime();
+			for (long i = 0; i < conversions; i++) {
+				int pair = (int) i & (PAIRS - 1);
+				sink += FxRateStore.current().convert(amounts[pair], from[pair], to[pair]);
+			}
+			long elapsed = System.nanoTime() - start;
+			allocated = allocatedBytes() - allocated;
+			System.out.printf("Round %d: %.1f ns per conversion, %d bytes allocated (total %.0f)%n",
+					round + 1, (double) elapsed / conversions, allocated, sink);
+		}
+	}
+
+	private static void measurePayments(Currency foreign, long payments) throws Exception {
+		Account account = Account.open(new Account.Credentials("fx.benchmark", "secret1234"), Account.AccountType.SAVINGS);
+		account.deposit(1e15);
+		account.registerPayee("12-34-56", "12345678", "Local", null);
+		account.registerPayee("12-34-56", "87654321", "Foreign", foreign);
+
+		for (int round = 0; round < 3; round++) {
+			long local = timePayments(account, "Local", payments);
+			long converted = timePayments(account, "Foreign", payments);
+			System.out.printf("Round %d: payment %.1f ns in %s, %.1f ns to a payee in %s, %.1f ns conversion overhead%n",
+					round + 1, (double) local / payments, account.getCurrency(), (double) converted / payments, foreign,
+					(double) (converted - local) / payments);
+		}
+	}
+
+	private static long timePayments(Account account, String payee, long payments) throws Exception {
+		long start = System.nanoTime();
+		for (long i = 0; i < payments; i++) {
+			account.makePayment(payee, 1);
+		}
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Returns bytes allocated by this thread, or zero if the JVM doesn't count them
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+}
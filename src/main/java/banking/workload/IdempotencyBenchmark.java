@@ -0,0 +1,53 @@
+package banking.workload;
+
+import banking.AccountNumber;
+import banking.services.IdempotencyStore;
+
+import java.util.SplittableRandom;
+
+/**
+ * Measures the time to claim or look up a request key in {@link IdempotencyStore}.
+ * Keys are picked at random from a working set of the given size, so after the first
+ * pass every lookup finds the key already used. Large working sets are dominated by
+ * cache misses rather than locking.
+ *
+ * Run with {@code ./gradlew idempotencyBenchmark -Pargs="keys=100000 lookups=20000000"}.
+ */
+public class IdempotencyBenchmark {
+	public static void main(String[] args) {
+		int keys = 100_000;
+		long lookups = 20_000_000;
+		for (String arg : args) {
+			int separator = arg.indexOf('=');
+			if (separator < 0) {
+				throw new IllegalArgumentException("Expected key=value: " + arg);
+			}
+			String value = arg.substring(separator + 1);
+			switch (arg.substring(0, separator)) {
+				case "keys": keys = Integer.parseInt(value); break;
+				case "lookups": lookups = Long.parseLong(value); break;
+				default: throw new IllegalArgumentException("Unknown setting: " + arg);
+			}
+		}
+
+		String[] requestKeys = new String[keys];
+		IdempotencyStore.Request[] requests = new IdempotencyStore.Request[keys];
+		AccountNumber accountNumber = AccountNumber.of(1);
+		for (int i = 0; i < keys; i++) {
+			requestKeys[i] = "request-" + i;
+			requests[i] = new IdempotencyStore.Request(accountNumber, "deposit", null, i);
+			IdempotencyStore.begin(requestKeys[i], requests[i]);
+		}
+
+		SplittableRandom random = new SplittableRandom(1);
+		for (int round = 0; round < 3; round++) {	// First rounds warm up the JIT
+			long start = System.nanoTime();
+			for (long i = 0; i < lookups; i++) {
+				int key = random.nextInt(keys);
+				IdempotencyStore.begin(requestKeys[key], requests[key]);
+			}
+			long elapsed = System.nanoTime() - start;
+			System.out.printf("Round %d: %.1f ns per lookup over %d keys%n", round + 1, (double) elapsed / lookups, keys);
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package banking.workload;
+
+import java.io.PrintWriter;
+
+/**
+ * Log-linear histogram of latencies in nanoseconds. Each power of two is split into
+ * 128 linear buckets, so recorded values are kept to within 1/128 (under 1%) from 1ns
+ * up to about 18 minutes. Not thread safe, use one per thread and
+ * {@link #add(LatencyHistogram)} them together.
+ */
+public class LatencyHistogram {
+	static final int SUB_BUCKET_BITS = 8;
+	static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int HALF = SUB_BUCKETS / 2;
+	private static final long MAX_VALUE = (1L << 40) - 1;
+
+	private final long[] counts = new long[index(MAX_VALUE) + 1];
+	private long totalCount;
+	private long max;
+	private double sum;
+
+	/**
+	 * Record a latency, values above about 18 minutes are recorded as 18 minutes
+	 *
+	 * @param nanos latency in nanoseconds
+	 */
+	public void record(long nanos) {
+		long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+		counts[index(value)]++;
+		totalCount++;
+		sum += value;
+		if (value > max) {
+			max = value;
+		}
+	}
+
+	/**
+	 * Values below {@link #SUB_BUCKETS} have a bucket each, above that each power of two
+	 * has {@link #SUB_BUCKETS} / 2 buckets of equal width.
+	 */
+	static int index(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int magnitude = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+		int subBucket = (int) (value >>> magnitude);	// Between HALF and SUB_BUCKETS - 1
+		return magnitude * HALF + subBucket;
+	}
+
+	/**
+	 * Returns the highest value recorded in a bucket
+	 */
+	static long highestValue(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int magnitude = index / HALF - 1;
+		long subBucket = index % HALF + HALF;
+		return ((subBucket + 1) << magnitude) - 1;
+	}
+
+	/**
+	 * Add the counts of another histogram to this one
+	 *
+	 * @param other
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+		totalCount += other.totalCount;
+		sum += other.sum;
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * Returns the value at a percentile, accurate to within the bucket width
+	 *
+	 * @param percentile from 0 to 100
+	 * @return latency in nanoseconds
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (totalCount == 0) {
+			return 0;
+		}
+
+		long target = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= target) {
+				return Math.min(highestValue(i), max);
+			}
+		}
+		return max;
+	}
+
+	public long getTotalCount() {
+		return totalCount;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public double getMean() {
+		return totalCount == 0 ? 0 : sum / totalCount;
+	}
+
+	/**
+	 * Write the non-empty buckets as value, count and cumulative percentile rows
+	 *
+	 * @param out
+	 * @param unitNanos nanoseconds per unit written, e.g. 1000 for microseconds
+	 */
+	public void writeDistribution(PrintWriter out, long unitNanos) {
+		out.printf("%14s %12s %12s%n", "Value", "Count", "Percentile");
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] == 0) {
+				continue;
+			}
+			seen += counts[i];
+			out.printf("%14.3f %12d %12.6f%n", Math.min(highestValue(i), max) / (double) unitNanos, counts[i], 100.0 * seen / totalCount);
+		}
+	}
+}
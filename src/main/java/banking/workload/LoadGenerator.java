@@ -0,0 +1,248 @@
+package banking.workload;
+
+import banking.Account;
+import banking.InsufficientFundsException;
+import banking.PayeeNotFoundException;
+import banking.VelocityLimitExceededException;
+import banking.services.AccountStore;
+
+import java.io.PrintWriter;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a mix of account operations against the store and reports throughput and
+ * latency. Accounts are picked with Zipfian skew so a few are hot. Every random choice
+ * comes from the seed, so a run is repeatable: each thread makes the same sequence of
+ * operations on the same accounts, though threads interleave differently.
+ *
+ * In open-loop mode each thread starts operations on a fixed schedule whether or not
+ * earlier ones have finished, and latency is measured from the scheduled start. A slow
+ * operation then shows up in the latency of every operation queued behind it, rather
+ * than being hidden by the generator slowing down (coordinated omission).
+ *
+ * Run with {@code ./gradlew loadgen -Pargs="accounts=1000000 threads=8 rate=200000"}, see
+ * {@link WorkloadConfig} for the settings.
+ */
+public class LoadGenerator {
+	static final String PASSWORD = "loadgen-password";
+	private static final Operation[] OPERATIONS = Operation.values();
+	private static final int MAX_AMOUNT = 100;
+
+	private final WorkloadConfig config;
+	private final ZipfianGenerator accountPicker;
+	private final int[] cumulativeWeights = new int[OPERATIONS.length];
+	private final String[] payeeNames;
+	private Account[] accounts;
+	private String[] usernames;
+
+	public LoadGenerator(WorkloadConfig config) {
+		this.config = config;
+		this.accountPicker = new ZipfianGenerator(config.getAccounts(), config.getSkew());
+		int total = 0;
+		for (Operation operation : OPERATIONS) {
+			total += config.getWeight(operation);
+			cumulativeWeights[operation.ordinal()] = total;
+		}
+		payeeNames = new String[config.getPayees()];
+		for (int i = 0; i < payeeNames.length; i++) {
+			payeeNames[i] = "payee-" + i;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		WorkloadConfig config = WorkloadConfig.parse(args);
+		System.out.printf("Opening %d accounts%n", config.getAccounts());
+		LoadGenerator generator = new LoadGenerator(config);
+		generator.setUp();
+
+		System.out.printf("Running %s%n", config);
+		WorkloadReport report = generator.run();
+		report.write(config.getReport());
+
+		PrintWriter out = new PrintWriter(System.out);
+		out.printf("Report written to %s%n", config.getReport().toAbsolutePath());
+		out.printf("%.0f operations per second, p99 response time %.1f us%n", report.getThroughput(),
+				report.getTotalResponseTimes().getValueAtPercentile(99) / 1000.0);
+		out.flush();
+	}
+
+	/**
+	 * Open and fund the accounts operations are made on, registering their payees
+	 */
+	public void setUp() {
+		SplittableRandom random = new SplittableRandom(config.getSeed());
+		accounts = new Account[config.getAccounts()];
+		usernames = new String[config.getAccounts()];
+		for (int i = 0; i < accounts.length; i++) {
+			usernames[i] = "loadgen-" + i;
+			Account.AccountType type = random.nextInt(4) == 0 ? Account.AccountType.SAVINGS : Account.AccountType.CURRENT;
+			accounts[i] = Account.open(new Account.Credentials(usernames[i], PASSWORD), type);
+			accounts[i].deposit(1000 + random.nextInt(10_000));
+			for (int j = 0; j < payeeNames.length; j++) {
+				accounts[i].registerPayee("12-34-56", String.format("%08d", j), payeeNames[j]);
+			}
+		}
+	}
+
+	/**
+	 * Run the workload, warming up before recording
+	 *
+	 * @return report of the recorded period
+	 * @throws InterruptedException
+	 */
+	public WorkloadReport run() throws InterruptedException {
+		int threads = config.getThreads();
+		long intervalNanos = config.getRate() > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) * threads / config.getRate()) : 0;
+		long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+		long recordFrom = start + TimeUnit.SECONDS.toNanos(config.getWarmupSeconds());
+		long end = recordFrom + TimeUnit.SECONDS.toNanos(config.getDurationSeconds());
+
+		Worker[] workers = new Worker[threads];
+		Thread[] running = new Thread[threads];
+		AtomicReference<String> firstError = new AtomicReference<>();
+		for (int i = 0; i < threads; i++) {
+			long firstStart = start + intervalNanos * i / threads;	// Stagger threads across the interval
+			workers[i] = new Worker(i, firstStart, intervalNanos, recordFrom, end, firstError);
+			running[i] = new Thread(workers[i], "loadgen-" + i);
+			running[i].start();
+		}
+		for (Thread thread : running) {
+			thread.join();
+		}
+
+		LatencyHistogram[] responseTimes = new LatencyHistogram[OPERATIONS.length];
+		LatencyHistogram[] serviceTimes = new LatencyHistogram[OPERATIONS.length];
+		long[] rejected = new long[OPERATIONS.length];
+		long[] errors = new long[OPERATIONS.length];
+		for (int op = 0; op < OPERATIONS.length; op++) {
+			responseTimes[op] = new LatencyHistogram();
+			serviceTimes[op] = new LatencyHistogram();
+			for (Worker worker : workers) {
+				responseTimes[op].add(worker.responseTimes[op]);
+				serviceTimes[op].add(worker.serviceTimes[op]);
+				rejected[op] += worker.rejected[op];
+				errors[op] += worker.errors[op];
+			}
+		}
+		return new WorkloadReport(config, config.getDurationSeconds(), responseTimes, serviceTimes, rejected, errors, firstError.get());
+	}
+
+	/**
+	 * One thread's share of the load, recording into its own histograms
+	 */
+	private class Worker implements Runnable {
+		private final int index;
+		private final long firstStart;
+		private final long intervalNanos;
+		private final long recordFrom;
+		private final long end;
+		private final AtomicReference<String> firstError;
+		private final SplittableRandom random;
+		private final LatencyHistogram[] responseTimes = new LatencyHistogram[OPERATIONS.length];
+		private final LatencyHistogram[] serviceTimes = new LatencyHistogram[OPERATIONS.length];
+		private final long[] rejected = new long[OPERATIONS.length];
+		private final long[] errors = new long[OPERATIONS.length];
+		private int opened;
+
+		private Worker(int index, long firstStart, long intervalNanos, long recordFrom, long end, AtomicReference<String> firstError) {
+			this.index = index;
+			this.firstStart = firstStart;
+			this.intervalNanos = intervalNanos;
+			this.recordFrom = recordFrom;
+			this.end = end;
+			this.firstError = firstError;
+			this.random = new SplittableRandom(config.getSeed() + (index + 1) * 0x9E3779B97F4A7C15L);
+			for (int i = 0; i < OPERATIONS.length; i++) {
+				responseTimes[i] = new LatencyHistogram();
+				serviceTimes[i] = new LatencyHistogram();
+			}
+		}
+
+		@Override
+		public void run() {
+			long due = firstStart;
+			while (true) {
+				long begin;
+				if (intervalNanos > 0) {
+					long wait;
+					while ((wait = due - System.nanoTime()) > 0) {
+						LockSupport.parkNanos(wait);
+					}
+					begin = due;	// Measure from when the operation was due, not when it started
+					due += intervalNanos;
+				} else {
+					begin = System.nanoTime();
+				}
+				if (begin - end >= 0) {
+					return;
+				}
+
+				Operation operation = pickOperation();
+				long started = System.nanoTime();
+				Outcome outcome = execute(operation);
+				long finished = System.nanoTime();
+
+				if (begin - recordFrom >= 0) {
+					int op = operation.ordinal();
+					responseTimes[op].record(finished - begin);
+					serviceTimes[op].record(finished - started);
+					if (outcome == Outcome.REJECTED) {
+						rejected[op]++;
+					} else if (outcome == Outcome.ERROR) {
+						errors[op]++;
+					}
+				}
+			}
+		}
+
+		private Operation pickOperation() {
+			int weight = random.nextInt(cumulativeWeights[OPERATIONS.length - 1]);
+			for (Operation operation : OPERATIONS) {
+				if (weight < cumulativeWeights[operation.ordinal()]) {
+					return operation;
+				}
+			}
+			throw new IllegalStateException("Operation weights are inconsistent");
+		}
+
+		private Outcome execute(Operation operation) {
+			int amount = 1 + random.nextInt(MAX_AMOUNT);
+			try {
+				switch (operation) {
+					case OPEN:
+						Account.open(new Account.Credentials("loadgen-" + index + "-" + opened++, PASSWORD));
+						break;
+					case DEPOSIT:
+						accounts[accountPicker.next(random)].deposit(amount);
+						break;
+					case WITHDRAW:
+						accounts[accountPicker.next(random)].withdraw(amount);
+						break;
+					case PAYMENT:
+						accounts[accountPicker.next(random)].makePayment(payeeNames[random.nextInt(payeeNames.length)], amount);
+						break;
+					case LOGIN:
+						if (AccountStore.getByUsername(usernames[accountPicker.next(random)], PASSWORD).isEmpty()) {
+							return Outcome.REJECTED;	// Throttled
+						}
+						break;
+				}
+				return Outcome.OK;
+			} catch (InsufficientFundsException | VelocityLimitExceededException e) {
+				return Outcome.REJECTED;
+			} catch (PayeeNotFoundException | RuntimeException e) {
+				firstError.compareAndSet(null, String.format("%s: %s", operation, e));
+				return Outcome.ERROR;
+			}
+		}
+	}
+
+	private enum Outcome {
+		OK,
+		REJECTED,
+		ERROR
+	}
+}
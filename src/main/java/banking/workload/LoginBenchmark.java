@@ -0,0 +1,108 @@
+package banking.workload;
+
+import banking.Account;
+import banking.services.AccountStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures legitimate login latency through {@link AccountStore#getByUsername(String, String)},
+ * first on its own and then while attacker threads try wrong passwords against random usernames
+ * as fast as they can. Legitimate logins are made at a fixed rate, each timed from when it was
+ * due. Legitimate users have logged in before so they're trusted by the throttle, their latency
+ * should stay close to the first phase while the attack is rejected unhashed.
+ *
+ * Run with {@code ./gradlew loginBenchmark -Pargs="users=100 attackers=4 rate=1000 duration=5"}.
+ */
+public class LoginBenchmark {
+	private static final String PASSWORD = "secret1234";
+
+	public static void main(String[] args) throws InterruptedException {
+		int users = 100;
+		int attackers = 4;
+		int duration = 5;
+		int rate = 1_000;
+		for (String arg : args) {
+			int separator = arg.indexOf('=');
+			if (separator < 0) {
+				throw new IllegalArgumentException("Expected key=value: " + arg);
+			}
+			String value = arg.substring(separator + 1);
+			switch (arg.substring(0, separator)) {
+				case "users": users = Integer.parseInt(value); break;
+				case "attackers": attackers = Integer.parseInt(value); break;
+				case "duration": duration = Integer.parseInt(value); break;
+				case "rate": rate = Integer.parseInt(value); break;
+				default: throw new IllegalArgumentException("Unknown setting: " + arg);
+			}
+		}
+
+		String[] usernames = new String[users];
+		for (int i = 0; i < users; i++) {
+			usernames[i] = "user-" + i;
+			Account.open(new Account.Credentials(usernames[i], PASSWORD));
+			AccountStore.getByUsername(usernames[i], PASSWORD);	// Trusted after a successful login
+		}
+
+		long durationNanos = TimeUnit.SECONDS.toNanos(duration);
+		long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+		measure("Warm up", usernames, 0, durationNanos, intervalNanos);
+		measure("No attack", usernames, 0, durationNanos, intervalNanos);
+		measure("Under attack", usernames, attackers, durationNanos, intervalNanos);
+	}
+
+	private static void measure(String phase, String[] usernames, int attackers, long durationNanos, long intervalNanos)
+			throws InterruptedException {
+		AtomicBoolean running = new AtomicBoolean(true);
+		AtomicLong attempts = new AtomicLong();
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < attackers; i++) {
+			SplittableRandom random = new SplittableRandom(i);
+			Thread attacker = new Thread(() -> {
+				long made = 0;
+				while (running.get()) {
+					AccountStore.getByUsername("target-" + random.nextInt(1_000_000), "wrong");
+					made++;
+				}
+				attempts.addAndGet(made);
+			}, "attacker-" + i);
+			attacker.setDaemon(true);
+			attacker.start();
+			threads.add(attacker);
+		}
+
+		LatencyHistogram latencies = new LatencyHistogram();
+		long refused = 0;
+		long start = System.nanoTime();
+		long end = start + durationNanos;
+		for (int i = 0; start + i * intervalNanos < end; i++) {
+			long intended = start + i * intervalNanos;
+			long wait = intended - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(wait);
+			}
+			boolean loggedIn = !AccountStore.getByUsername(usernames[i % usernames.length], PASSWORD).isEmpty();
+			latencies.record(System.nanoTime() - intended);	// From when the login was due, so a stall isn't hidden
+			if (!loggedIn) {
+				refused++;
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		running.set(false);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		System.out.printf("%s: %.0f logins per second, p50 %.1f us, p99 %.1f us, max %.1f us, %d refused, %.0f attack attempts per second%n",
+				phase, latencies.getTotalCount() / seconds,
+				latencies.getValueAtPercentile(50) / 1000.0,
+				latencies.getValueAtPercentile(99) / 1000.0,
+				latencies.getMax() / 1000.0, refused, attempts.get() / seconds);
+	}
+}
@@ -0,0 +1,107 @@
+package banking.workload;
+
+import banking.Account;
+import banking.services.AccountStore;
+import banking.services.numbering.IAccountNumberGenerator;
+import banking.services.numbering.TimeOrderedAccountNumberGenerator;
+import banking.services.numbering.UuidAccountNumberGenerator;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures account number generation and {@link Account#open(Account.Credentials)} throughput
+ * from many threads, once with each account number generator. Credentials are created from
+ * a password hash before timing starts, so opening an account doesn't include hashing.
+ *
+ * Run with {@code ./gradlew openBenchmark -Pargs="threads=16 accounts=100000"}, accounts per thread.
+ */
+public class OpenBenchmark {
+	private static final String PASSWORD_HASH = new Account.Credentials("benchmark", "secret1234").getPasswordHash();
+
+	public static void main(String[] args) throws InterruptedException {
+		int threads = 16;
+		int accounts = 100_000;
+		for (String arg : args) {
+			int separator = arg.indexOf('=');
+			if (separator < 0) {
+				throw new IllegalArgumentException("Expected key=value: " + arg);
+			}
+			String value = arg.substring(separator + 1);
+			switch (arg.substring(0, separator)) {
+				case "threads": threads = Integer.parseInt(value); break;
+				case "accounts": accounts = Integer.parseInt(value); break;
+				default: throw new IllegalArgumentException("Unknown setting: " + arg);
+			}
+		}
+
+		IAccountNumberGenerator[] generators = { new UuidAccountNumberGenerator(), new TimeOrderedAccountNumberGenerator(0) };
+		System.out.printf("%d threads, %d accounts per thread%n", threads, accounts);
+		for (int round = 0; round < 3; round++) {	// First rounds warm up the JIT
+			for (IAccountNumberGenerator generator : generators) {
+				String name = generator.getClass().getSimpleName();
+				double generated = run(threads, accounts, (thread, i) -> generator.next());
+
+				Account.setAccountNumberGenerator(generator);
+				Account.Credentials[][] credentials = newCredentials(threads, accounts);
+				double opened = run(threads, accounts, (thread, i) -> Account.open(credentials[thread][i]));
+				AccountStore.deleteAll();
+
+				System.out.printf("Round %d: %s %.0f numbers per second, %.0f accounts opened per second%n",
+						round + 1, name, generated, opened);
+			}
+		}
+	}
+
+	/**
+	 * Credentials for every account, a different username per account as each user's list of accounts is copied on write
+	 */
+	private static Account.Credentials[][] newCredentials(int threads, int accounts) {
+		Account.Credentials[][] credentials = new Account.Credentials[threads][accounts];
+		for (int thread = 0; thread < threads; thread++) {
+			for (int i = 0; i < accounts; i++) {
+				credentials[thread][i] = Account.Credentials.fromHash("user-" + thread + "-" + i, PASSWORD_HASH);
+			}
+		}
+		return credentials;
+	}
+
+	/**
+	 * Run the task from every thread at once
+	 *
+	 * @return operations per second across all threads
+	 */
+	private static double run(int threads, int operations, Task task) throws InterruptedException {
+		CountDownLatch ready = new CountDownLatch(threads);
+		CountDownLatch go = new CountDownLatch(1);
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			int thread = t;
+			workers[t] = new Thread(() -> {
+				ready.countDown();
+				try {
+					go.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int i = 0; i < operations; i++) {
+					task.run(thread, i);
+				}
+			}, "open-benchmark-" + t);
+			workers[t].start();
+		}
+
+		ready.await();
+		long start = System.nanoTime();
+		go.countDown();
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		long elapsed = System.nanoTime() - start;
+		return (double) threads * operations * TimeUnit.SECONDS.toNanos(1) / elapsed;
+	}
+
+	private interface Task {
+		void run(int thread, int index);
+	}
+}
@@ -0,0 +1,12 @@
+package banking.workload;
+
+/**
+ * Operations a load generator can drive.
+ */
+public enum Operation {
+	OPEN,
+	DEPOSIT,
+	WITHDRAW,
+	PAYMENT,
+	LOGIN
+}
@@ -0,0 +1,208 @@
+package banking.workload;
+
+import banking.Account;
+import banking.AccountNumber;
+import banking.client.BankClient;
+import banking.server.BankServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures request throughput through {@link BankServer} over localhost. Each connection
+ * opens its own account then sends batches of pipelined deposits and balance enquiries,
+ * one write per batch, waiting for the batch's responses before sending the next. Latency
+ * is recorded per request, from when its batch was sent to when the batch completed.
+ *
+ * Run with {@code ./gradlew serverBenchmark -Pargs="connections=8 batch=64 duration=10"},
+ * add {@code host=} and {@code port=} to measure a server that's already running.
+ */
+public class ServerBenchmark {
+	private final int connections;
+	private final int batch;
+	private final long durationNanos;
+	private final long warmupNanos;
+	private final InetSocketAddress address;
+	private final int serverThreads;
+
+	public ServerBenchmark(int connections, int batch, int durationSeconds, int warmupSeconds,
+						   InetSocketAddress address, int serverThreads) {
+		if (connections < 1 || batch < 1) {
+			throw new IllegalArgumentException("Connections and batch size must be positive");
+		}
+		this.connections = connections;
+		this.batch = batch;
+		this.durationNanos = TimeUnit.SECONDS.toNanos(durationSeconds);
+		this.warmupNanos = TimeUnit.SECONDS.toNanos(warmupSeconds);
+		this.address = address;
+		this.serverThreads = serverThreads;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int connections = 8;
+		int batch = 64;
+		int duration = 10;
+		int warmup = 2;
+		String host = null;
+		int port = BankServer.DEFAULT_PORT;
+		int serverThreads = Runtime.getRuntime().availableProcessors();
+		for (String arg : args) {
+			int separator = arg.indexOf('=');
+			if (separator < 0) {
+				throw new IllegalArgumentException("Expected key=value: " + arg);
+			}
+			String value = arg.substring(separator + 1);
+			switch (arg.substring(0, separator)) {
+				case "connections": connections = Integer.parseInt(value); break;
+				case "batch": batch = Integer.parseInt(value); break;
+				case "duration": duration = Integer.parseInt(value); break;
+				case "warmup": warmup = Integer.parseInt(value); break;
+				case "host": host = value; break;
+				case "port": port = Integer.parseInt(value); break;
+				case "serverThreads": serverThreads = Integer.parseInt(value); break;
+				default: throw new IllegalArgumentException("Unknown setting: " + arg);
+			}
+		}
+
+		InetSocketAddress address = host == null ? null : new InetSocketAddress(host, port);
+		ServerBenchmark benchmark = new ServerBenchmark(connections, batch, duration, warmup, address, serverThreads);
+		System.out.printf("Running %d connections, %d requests per batch, for %d seconds%s%n", connections, batch, duration,
+				address == null ? String.format(" against an embedded server with %d threads", serverThreads) : " against " + address);
+		Result result = benchmark.run();
+		System.out.printf("%.0f operations per second, p50 %.1f us, p99 %.1f us, max %.1f us%n", result.getThroughput(),
+				result.getLatencies().getValueAtPercentile(50) / 1000.0,
+				result.getLatencies().getValueAtPercentile(99) / 1000.0,
+				result.getLatencies().getMax() / 1000.0);
+	}
+
+	/**
+	 * Run the benchmark, starting an embedded server unless an address was given
+	 *
+	 * @return
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public Result run() throws IOException, InterruptedException {
+		BankServer server = null;
+		InetSocketAddress target = address;
+		if (target == null) {
+			server = new BankServer(new InetSocketAddress("localhost", 0), serverThreads);
+			server.start();
+			target = new InetSocketAddress("localhost", server.getPort());
+		}
+
+		try {
+			List<Driver> drivers = new ArrayList<>();
+			for (int i = 0; i < connections; i++) {
+				drivers.add(new Driver(new BankClient(target), i));
+			}
+
+			long start = System.nanoTime();
+			long measureFrom = start + warmupNanos;
+			long end = measureFrom + durationNanos;
+			for (Driver driver : drivers) {
+				driver.start(measureFrom, end);
+			}
+
+			Result result = new Result(durationNanos);
+			for (Driver driver : drivers) {
+				driver.thread.join();
+				driver.client.close();
+				if (driver.failure != null) {
+					throw driver.failure;
+				}
+				result.operations.addAndGet(driver.operations);
+				result.latencies.add(driver.latencies);
+			}
+			return result;
+		} finally {
+			if (server != null) {
+				server.close();
+			}
+		}
+	}
+
+	/**
+	 * Sends batches of requests on one connection
+	 */
+	private class Driver implements Runnable {
+		private final BankClient client;
+		private final int index;
+		private final LatencyHistogram latencies = new LatencyHistogram();
+		private Thread thread;
+		private long measureFrom;
+		private long end;
+		private long operations;
+		private IOException failure;
+
+		private Driver(BankClient client, int index) {
+			this.client = client;
+			this.index = index;
+		}
+
+		private void start(long measureFrom, long end) {
+			this.measureFrom = measureFrom;
+			this.end = end;
+			thread = new Thread(this, "benchmark-" + index);
+			thread.start();
+		}
+
+		@Override
+		public void run() {
+			try {
+				AccountNumber accountNumber = client.open("benchmark-" + index + "-" + System.nanoTime(), "benchmark-password",
+						Account.AccountType.CURRENT, Currency.getInstance("GBP"));
+				CompletableFuture<?>[] responses = new CompletableFuture<?>[batch];
+				long now;
+				while ((now = System.nanoTime()) < end) {
+					for (int i = 0; i < batch; i++) {
+						responses[i] = (i & 1) == 0 ? client.depositAsync(accountNumber, 1) : client.getBalanceAsync(accountNumber);
+					}
+					client.flush();
+					CompletableFuture.allOf(responses).join();
+
+					long completed = System.nanoTime();
+					if (now >= measureFrom) {
+						operations += batch;
+						for (int i = 0; i < batch; i++) {
+							latencies.record(completed - now);
+						}
+					}
+				}
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+	}
+
+	/**
+	 * Operations completed and their latencies
+	 */
+	public static class Result {
+		private final long durationNanos;
+		private final AtomicLong operations = new AtomicLong();
+		private final LatencyHistogram latencies = new LatencyHistogram();
+
+		private Result(long durationNanos) {
+			this.durationNanos = durationNanos;
+		}
+
+		public long getOperations() {
+			return operations.get();
+		}
+
+		public double getThroughput() {
+			return operations.get() * 1e9 / durationNanos;
+		}
+
+		public LatencyHistogram getLatencies() {
+			return latencies;
+		}
+	}
+}
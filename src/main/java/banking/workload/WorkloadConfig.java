@@ -0,0 +1,172 @@
+package banking.workload;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Settings for a load generator run, read from key=value arguments or a properties file.
+ *
+ * <pre>
+ * accounts=100000        accounts opened before the run
+ * payees=5               payees registered on each account
+ * threads=4              worker threads
+ * rate=0                 operations per second across all threads, 0 to run flat out (closed loop)
+ * duration=60            seconds to record for
+ * warmup=10              seconds to run before recording
+ * skew=0.99              Zipfian skew of account popularity, 0 for uniform
+ * mix=deposit:40,withdraw:30,payment:20,login:9,open:1
+ * seed=1                 seed for every random choice
+ * report=loadgen-report.txt
+ * </pre>
+ */
+public class WorkloadConfig {
+	private int accounts = 100_000;
+	private int payees = 5;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private double rate = 0;
+	private int durationSeconds = 60;
+	private int warmupSeconds = 10;
+	private double skew = 0.99;
+	private final Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+	private long seed = 1;
+	private Path report = Paths.get("loadgen-report.txt");
+
+	public WorkloadConfig() {
+		parseMix("deposit:40,withdraw:30,payment:20,login:9,open:1");
+	}
+
+	/**
+	 * Read settings from arguments, each either key=value or the path of a properties file
+	 *
+	 * @param args
+	 * @return settings, defaults for any not given
+	 * @throws IllegalArgumentException if a setting is unknown or invalid
+	 * @throws IOException if a properties file can't be read
+	 */
+	public static WorkloadConfig parse(String... args) throws IllegalArgumentException, IOException {
+		WorkloadConfig config = new WorkloadConfig();
+		for (String arg : args) {
+			int equals = arg.indexOf('=');
+			if (equals < 0) {
+				Properties properties = new Properties();
+				try (Reader reader = Files.newBufferedReader(Paths.get(arg))) {
+					properties.load(reader);
+				}
+				for (String key : properties.stringPropertyNames()) {
+					config.set(key, properties.getProperty(key));
+				}
+			} else {
+				config.set(arg.substring(0, equals).trim(), arg.substring(equals + 1).trim());
+			}
+		}
+		config.validate();
+		return config;
+	}
+
+	private void set(String key, String value) {
+		try {
+			switch (key) {
+				case "accounts": accounts = Integer.parseInt(value); break;
+				case "payees": payees = Integer.parseInt(value); break;
+				case "threads": threads = Integer.parseInt(value); break;
+				case "rate": rate = Double.parseDouble(value); break;
+				case "duration": durationSeconds = Integer.parseInt(value); break;
+				case "warmup": warmupSeconds = Integer.parseInt(value); break;
+				case "skew": skew = Double.parseDouble(value); break;
+				case "mix": parseMix(value); break;
+				case "seed": seed = Long.parseLong(value); break;
+				case "report": report = Paths.get(value); break;
+				default: throw new IllegalArgumentException(String.format("Unknown setting %s", key));
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(String.format("Invalid value %s for %s", value, key));
+		}
+	}
+
+	private void parseMix(String value) {
+		mix.clear();
+		for (String part : value.split(",")) {
+			String[] weight = part.split(":");
+			if (weight.length != 2) {
+				throw new IllegalArgumentException(String.format("Invalid operation weight %s", part));
+			}
+			mix.put(Operation.valueOf(weight[0].trim().toUpperCase()), Integer.parseInt(weight[1].trim()));
+		}
+	}
+
+	private void validate() {
+		if (accounts < 1 || threads < 1 || durationSeconds < 1 || warmupSeconds < 0 || rate < 0 || payees < 0) {
+			throw new IllegalArgumentException("accounts, threads and duration must be positive, other settings not negative");
+		}
+		if (skew < 0 || skew >= 1) {
+			throw new IllegalArgumentException("skew must be at least 0 and less than 1");
+		}
+		if (mix.values().stream().anyMatch(weight -> weight < 0) || getTotalWeight() == 0) {
+			throw new IllegalArgumentException("mix weights must not be negative and not all zero");
+		}
+		if (payees == 0 && mix.getOrDefault(Operation.PAYMENT, 0) > 0) {
+			throw new IllegalArgumentException("payments need payees");
+		}
+	}
+
+	public int getAccounts() {
+		return accounts;
+	}
+
+	public int getPayees() {
+		return payees;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Returns the target operations per second, 0 for closed loop
+	 *
+	 * @return
+	 */
+	public double getRate() {
+		return rate;
+	}
+
+	public int getDurationSeconds() {
+		return durationSeconds;
+	}
+
+	public int getWarmupSeconds() {
+		return warmupSeconds;
+	}
+
+	public double getSkew() {
+		return skew;
+	}
+
+	public int getWeight(Operation operation) {
+		return mix.getOrDefault(operation, 0);
+	}
+
+	public int getTotalWeight() {
+		return mix.values().stream().mapToInt(Integer::intValue).sum();
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public Path getReport() {
+		return report;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("accounts=%s payees=%s threads=%s rate=%s duration=%s warmup=%s skew=%s mix=%s seed=%s",
+				accounts, payees, threads, rate, durationSeconds, warmupSeconds, skew, mix, seed);
+	}
+}
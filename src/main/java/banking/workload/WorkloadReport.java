@@ -0,0 +1,181 @@
+package banking.workload;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Throughput and latency of a load generator run. Response times are measured from
+ * when an operation was due to start, so in open-loop runs they include any time spent
+ * waiting behind slow operations; service times are measured from when it did start.
+ */
+public class WorkloadReport {
+	private static final Operation[] OPERATIONS = Operation.values();
+	private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+	private static final long MICROS = 1000;
+
+	private final WorkloadConfig config;
+	private final double recordedSeconds;
+	private final LatencyHistogram[] responseTimes;
+	private final LatencyHistogram[] serviceTimes;
+	private final long[] rejected;
+	private final long[] errors;
+	private final String firstError;
+
+	WorkloadReport(WorkloadConfig config, double recordedSeconds, LatencyHistogram[] responseTimes,
+				   LatencyHistogram[] serviceTimes, long[] rejected, long[] errors, String firstError) {
+		this.config = config;
+		this.recordedSeconds = recordedSeconds;
+		this.responseTimes = responseTimes;
+		this.serviceTimes = serviceTimes;
+		this.rejected = rejected;
+		this.errors = errors;
+		this.firstError = firstError;
+	}
+
+	/**
+	 * Returns the response times of an operation
+	 *
+	 * @param operation
+	 * @return
+	 */
+	public LatencyHistogram getResponseTimes(Operation operation) {
+		return responseTimes[operation.ordinal()];
+	}
+
+	/**
+	 * Returns the service times of an operation
+	 *
+	 * @param operation
+	 * @return
+	 */
+	public LatencyHistogram getServiceTimes(Operation operation) {
+		return serviceTimes[operation.ordinal()];
+	}
+
+	/**
+	 * Returns the number of operations rejected by the bank, e.g. for insufficient funds
+	 *
+	 * @param operation
+	 * @return
+	 */
+	public long getRejected(Operation operation) {
+		return rejected[operation.ordinal()];
+	}
+
+	/**
+	 * Returns the number of operations that failed unexpectedly
+	 *
+	 * @param operation
+	 * @return
+	 */
+	public long getErrors(Operation operation) {
+		return errors[operation.ordinal()];
+	}
+
+	/**
+	 * Returns the response times of all operations together
+	 *
+	 * @return
+	 */
+	public LatencyHistogram getTotalResponseTimes() {
+		return total(responseTimes);
+	}
+
+	/**
+	 * Returns the total number of operations recorded
+	 *
+	 * @return
+	 */
+	public long getTotalCount() {
+		return total(responseTimes).getTotalCount();
+	}
+
+	/**
+	 * Returns recorded operations per second
+	 *
+	 * @return
+	 */
+	public double getThroughput() {
+		return getTotalCount() / recordedSeconds;
+	}
+
+	/**
+	 * Write the report, with a latency table and the full distribution of each operation
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public void write(Path file) throws IOException {
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+			write(out);
+		}
+	}
+
+	/**
+	 * Write the report
+	 *
+	 * @param out
+	 */
+	public void write(PrintWriter out) {
+		out.printf("Load generator report%n");
+		out.printf("Settings: %s%n", config);
+		out.printf("Mode: %s%n", config.getRate() > 0
+				? String.format("open loop at %.0f operations per second", config.getRate()) : "closed loop");
+		out.printf("Recorded: %.1f s, %d operations, %.0f operations per second%n", recordedSeconds, getTotalCount(), getThroughput());
+		if (firstError != null) {
+			out.printf("First error: %s%n", firstError);
+		}
+
+		out.printf("%nResponse time (us)%n");
+		writeTable(out, responseTimes);
+		if (config.getRate() > 0) {
+			out.printf("%nService time (us)%n");
+			writeTable(out, serviceTimes);
+		}
+
+		for (Operation operation : OPERATIONS) {
+			LatencyHistogram histogram = responseTimes[operation.ordinal()];
+			if (histogram.getTotalCount() > 0) {
+				out.printf("%n%s response time distribution (us)%n", operation);
+				histogram.writeDistribution(out, MICROS);
+			}
+		}
+	}
+
+	private void writeTable(PrintWriter out, LatencyHistogram[] histograms) {
+		out.printf("%-10s %10s %10s %8s %12s %10s", "Operation", "Count", "Rejected", "Errors", "Ops/s", "Mean");
+		for (double percentile : PERCENTILES) {
+			out.printf(" %10s", "p" + percentile);
+		}
+		out.printf(" %10s%n", "Max");
+
+		long totalRejected = 0;
+		long totalErrors = 0;
+		for (Operation operation : OPERATIONS) {
+			int i = operation.ordinal();
+			writeRow(out, operation.name(), histograms[i], rejected[i], errors[i]);
+			totalRejected += rejected[i];
+			totalErrors += errors[i];
+		}
+		writeRow(out, "ALL", total(histograms), totalRejected, totalErrors);
+	}
+
+	private void writeRow(PrintWriter out, String name, LatencyHistogram histogram, long rejectedCount, long errorCount) {
+		out.printf("%-10s %10d %10d %8d %12.0f %10.1f", name, histogram.getTotalCount(), rejectedCount, errorCount,
+				histogram.getTotalCount() / recordedSeconds, histogram.getMean() / MICROS);
+		for (double percentile : PERCENTILES) {
+			out.printf(" %10.1f", histogram.getValueAtPercentile(percentile) / (double) MICROS);
+		}
+		out.printf(" %10.1f%n", histogram.getMax() / (double) MICROS);
+	}
+
+	private static LatencyHistogram total(LatencyHistogram[] histograms) {
+		LatencyHistogram total = new LatencyHistogram();
+		for (LatencyHistogram histogram : histograms) {
+			total.add(histogram);
+		}
+		return total;
+	}
+}
@@ -0,0 +1,74 @@
+package banking.workload;
+
+import java.util.SplittableRandom;
+
+/**
+ * Picks item indexes following a Zipfian distribution, index 0 being the most popular.
+ * Uses the rejection-free method from Gray et al, "Quickly Generating Billion-Record
+ * Synthetic Databases", with the normalising constant computed once up front.
+ */
+public class ZipfianGenerator {
+	private final int items;
+	private final double theta;
+	private final double alpha;
+	private final double zetaN;
+	private final double eta;
+	private final double halfPowTheta;
+
+	/**
+	 * Create a generator
+	 *
+	 * @param items number of items
+	 * @param theta skew from 0 (uniform) up to but not including 1, 0.99 is a typical hot set
+	 * @throws IllegalArgumentException
+	 */
+	public ZipfianGenerator(int items, double theta) throws IllegalArgumentException {
+		if (items < 1) {
+			throw new IllegalArgumentException("Number of items must be positive");
+		}
+		if (theta < 0 || theta >= 1) {
+			throw new IllegalArgumentException("Skew must be at least 0 and less than 1");
+		}
+
+		this.items = items;
+		this.theta = theta;
+		this.alpha = 1 / (1 - theta);
+		this.zetaN = zeta(items, theta);
+		this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+		this.halfPowTheta = 1 + Math.pow(0.5, theta);
+	}
+
+	private static double zeta(int n, double theta) {
+		double sum = 0;
+		for (int i = 1; i <= n; i++) {
+			sum += 1 / Math.pow(i, theta);
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the next item index
+	 *
+	 * @param random source of randomness, one per thread
+	 * @return index from 0 to items - 1
+	 */
+	public int next(SplittableRandom random) {
+		if (theta == 0) {
+			return random.nextInt(items);
+		}
+
+		double u = random.nextDouble();
+		double uz = u * zetaN;
+		if (uz < 1) {
+			return 0;
+		}
+		if (uz < halfPowTheta) {
+			return Math.min(1, items - 1);
+		}
+		return Math.min((int) (items * Math.pow(eta * u - eta + 1, alpha)), items - 1);
+	}
+
+	public int getItems() {
+		return items;
+	}
+}
@@ -0,0 +1,74 @@
+package banking;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+
+public class AccountNumberTest {
+	@Test
+	public void whenCompactNumberFormatted_ThenParsedBack() {
+		// Given
+		AccountNumber accountNumber = AccountNumber.of(123456789L);
+
+		// When
+		AccountNumber parsed = AccountNumber.parse(accountNumber.toString());
+
+		// Then
+		assertThat(accountNumber.toString()).startsWith("123456789").hasSize(11);
+		assertThat(parsed).isEqualTo(accountNumber);
+	}
+
+	@Test
+	public void whenCheckDigitsWrong_ThenReject() {
+		// Given
+		String formatted = AccountNumber.of(123456789L).toString();
+		String mistyped = formatted.substring(0, 3) + "0" + formatted.substring(4);
+
+		// When
+		try {
+			AccountNumber.parse(mistyped);
+			fail("Expected IllegalArgumentException to be thrown");
+		} catch (IllegalArgumentException e) {
+			assertThat(e.getMessage()).isEqualTo(mistyped + " has invalid check digits");
+		}
+	}
+
+	@Test
+	public void whenUuidNumber_ThenUuidCompatible() {
+		// Given
+		UUID uuid = UUID.randomUUID();
+
+		// When
+		AccountNumber accountNumber = AccountNumber.of(uuid);
+
+		// Then
+		assertThat(accountNumber.isCompact()).isFalse();
+		assertThat(accountNumber.toUUID()).isEqualTo(uuid);
+		assertThat(AccountNumber.parse(uuid.toString())).isEqualTo(accountNumber);
+	}
+
+	@Test
+	public void whenCompactNumber_ThenRoundTripsThroughUuid() {
+		// Given
+		AccountNumber accountNumber = AccountNumber.of(42L);
+
+		// When
+		AccountNumber converted = AccountNumber.of(accountNumber.toUUID());
+
+		// Then
+		assertThat(converted.isCompact()).isTrue();
+		assertThat(converted.longValue()).isEqualTo(42L);
+	}
+
+	@Test
+	public void whenAccountOpened_ThenAccountNumberAvailableAsUuid() {
+		// When
+		Account account = Account.open(new Account.Credentials("dave.green", "secret1234"));
+
+		// Then
+		assertThat(account.getAccountNumberUUID()).isEqualTo(account.getAccountNumber().toUUID());
+	}
+}
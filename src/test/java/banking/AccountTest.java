@@ -1,9 +1,17 @@
 package banking;
 
 import banking.services.AccountStore;
+import banking.services.IdempotencyStore;
+import banking.services.fx.FxRateStore;
+import banking.services.fx.FxRates;
+import banking.services.numbering.TimeOrderedAccountNumberGenerator;
+import banking.services.numbering.UuidAccountNumberGenerator;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Collections;
+import java.util.Currency;
+
 import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.assertj.core.api.Java6Assertions.fail;
 
@@ -15,6 +23,8 @@ public class AccountTest {
 	@Before
 	public void setup() {
 		AccountStore.deleteAll();
+		IdempotencyStore.deleteAll();
+		FxRateStore.deleteAll();
 		credentials = new Account.Credentials(USERNAME, PASSWORD);
 	}
 
@@ -28,6 +38,22 @@ public class AccountTest {
 		assertThat(AccountStore.getByUsername(credentials).get(0).getAccountNumber()).isEqualTo(account.getAccountNumber());
 	}
 
+	@Test
+	public void whenCompactNumberGeneratorSet_ThenAccountOpenedWithCompactNumber() {
+		// Given
+		Account.setAccountNumberGenerator(new TimeOrderedAccountNumberGenerator(1));
+
+		// When
+		try {
+			Account account = Account.open(credentials);
+
+			// Then
+			assertThat(account.getAccountNumber().isCompact()).isTrue();
+		} finally {
+			Account.setAccountNumberGenerator(new UuidAccountNumberGenerator());
+		}
+	}
+
 	@Test
 	public void whenOpenNewAccount_ThenAccountCreated() {
 		// When
@@ -137,7 +163,7 @@ public class AccountTest {
 	}
 
 	@Test
-	public void whenTransferFunds_ThenTransferCompleted() throws PayeeNotFoundException {
+	public void whenTransferFunds_ThenTransferCompleted() throws PayeeNotFoundException, InsufficientFundsException {
 		// Given
 		String sortCode = "001122";
 		String accountNumber = "61247613";
@@ -154,7 +180,7 @@ public class AccountTest {
 	}
 
 	@Test
-	public void whenTransferFundsToPayeeWhichIsNotRegistered_ThenExceptionThrown() {
+	public void whenTransferFundsToPayeeWhichIsNotRegistered_ThenExceptionThrown() throws InsufficientFundsException {
 		// Given
 		String sortCode = "001122";
 		String accountNumber = "61247613";
@@ -211,4 +237,190 @@ public class AccountTest {
 		// Then
 		assertThat(account.getStatus()).isEqualTo(Account.Status.OPEN);
 	}
+
+	@Test
+	public void whenDepositRetriedWithSameRequestKey_ThenAppliedOnce() {
+		// Given
+		Account account = Account.open(credentials);
+
+		// When
+		boolean first = account.deposit("request-1", 10D);
+		boolean retry = account.deposit("request-1", 10D);
+
+		// Then
+		assertThat(first).isTrue();
+		assertThat(retry).isFalse();
+		assertThat(account.getBalance()).isEqualTo(10D);
+	}
+
+	@Test
+	public void whenDepositWithDifferentRequestKeys_ThenBothApplied() {
+		// Given
+		Account account = Account.open(credentials);
+
+		// When
+		account.deposit("request-1", 10D);
+		account.deposit("request-2", 10D);
+
+		// Then
+		assertThat(account.getBalance()).isEqualTo(20D);
+	}
+
+	@Test
+	public void whenRejectedDepositRetried_ThenOriginalExceptionReplayed() {
+		// Given
+		Account account = Account.open(credentials);
+		IllegalArgumentException original = null;
+		try {
+			account.deposit("request-1", -10D);
+		} catch (IllegalArgumentException e) {
+			original = e;
+		}
+
+		// When
+		try {
+			account.deposit("request-1", -10D);
+			fail("Expected IllegalArgumentException to be thrown");
+		} catch (IllegalArgumentException e) {
+			// Then
+			assertThat(e).isSameAs(original);
+		}
+	}
+
+	@Test
+	public void whenRequestKeyReusedForDifferentAmount_ThenThrowsIllegalArgumentException() {
+		// Given
+		Account account = Account.open(credentials);
+		account.deposit("request-1", 10D);
+
+		// When
+		try {
+			account.deposit("request-1", 20D);
+			fail("Expected IllegalArgumentException to be thrown");
+		} catch (IllegalArgumentException e) {
+			// Then
+			assertThat(e.getMessage()).isEqualTo("Request key request-1 was used for a different request");
+		}
+		assertThat(account.getBalance()).isEqualTo(10D);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void whenRequestKeyReusedForDifferentAccount_ThenThrowsIllegalArgumentException() {
+		// Given
+		Account.open(credentials).deposit("request-1", 10D);
+		Account other = Account.open(credentials);
+
+		// When
+		other.deposit("request-1", 10D);
+	}
+
+	@Test
+	public void whenPaymentRetriedWithSameRequestKey_ThenPaidOnce() throws PayeeNotFoundException, InsufficientFundsException {
+		// Given
+		Account account = Account.open(credentials);
+		account.deposit(200D);
+		account.registerPayee("001122", "61247613", "eJavaGuru");
+
+		// When
+		boolean first = account.makePayment("request-1", "eJavaGuru", 100D);
+		boolean retry = account.makePayment("request-1", "eJavaGuru", 100D);
+
+		// Then
+		assertThat(first).isTrue();
+		assertThat(retry).isFalse();
+		assertThat(account.getBalance()).isEqualTo(100D);
+	}
+
+	@Test
+	public void whenPaymentToUnknownPayeeRetried_ThenPayeeNotFoundReplayed() throws InsufficientFundsException {
+		// Given
+		Account account = Account.open(credentials);
+		account.deposit(200D);
+
+		// When
+		for (int attempt = 0; attempt < 2; attempt++) {
+			try {
+				account.makePayment("request-1", "dave", 100D);
+				fail("Expected PayeeNotFoundException to be thrown");
+			} catch (PayeeNotFoundException e) {
+				// Then
+				assertThat(e.getMessage()).isEqualTo("dave not found in list of payees");
+			}
+		}
+	}
+
+	@Test
+	public void whenTransferBetweenCurrencies_ThenCreditConverted() throws InsufficientFundsException {
+		// Given
+		Currency eur = Currency.getInstance("EUR");
+		FxRateStore.publish(new FxRates(Account.DEFAULT_CURRENCY, Collections.singletonMap(eur, 1.16)));
+		Account from = Account.open(credentials, Account.AccountType.SAVINGS);
+		Account to = Account.open(credentials, Account.AccountType.SAVINGS, eur);
+		from.deposit(100);
+
+		// When
+		double credited = from.transfer(to, 25);
+
+		// Then
+		assertThat(credited).isEqualTo(29.0);
+		assertThat(from.getBalance()).isEqualTo(75.0);
+		assertThat(to.getBalance()).isEqualTo(29.0);
+	}
+
+	@Test
+	public void whenPayeeHasOwnCurrency_ThenAccountDebitedConvertedAmount() throws PayeeNotFoundException, InsufficientFundsException {
+		// Given
+		Currency eur = Currency.getInstance("EUR");
+		FxRateStore.publish(new FxRates(Account.DEFAULT_CURRENCY, Collections.singletonMap(eur, 1.25)));
+		Account account = Account.open(credentials, Account.AccountType.SAVINGS);
+		account.deposit(100);
+		account.registerPayee("12-34-56", "12345678", "Steve Green", eur);
+
+		// When
+		account.makePayment("Steve Green", 50);
+
+		// Then
+		assertThat(account.getBalance()).isEqualTo(60.0);
+	}
+
+	@Test
+	public void whenPaymentFailsForMissingFxRate_ThenRetryAllowedOnceRatePublished() throws Exception {
+		// Given
+		Currency eur = Currency.getInstance("EUR");
+		Account account = Account.open(credentials, Account.AccountType.SAVINGS);
+		account.deposit(100);
+		account.registerPayee("12-34-56", "12345678", "Steve Green", eur);
+		try {
+			account.makePayment("request-1", "Steve Green", 50);
+			fail("Expected FxRateUnavailableException to be thrown");
+		} catch (FxRateUnavailableException e) {
+			// No rate published yet
+		}
+		FxRateStore.publish(new FxRates(Account.DEFAULT_CURRENCY, Collections.singletonMap(eur, 1.25)));
+
+		// When
+		boolean paid = account.makePayment("request-1", "Steve Green", 50);
+
+		// Then
+		assertThat(paid).isTrue();
+		assertThat(account.getBalance()).isEqualTo(60.0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void whenDepositNaN_ThenThrowsIllegalArgumentException() {
+		// Given
+		Account account = Account.open(credentials);
+
+		// When
+		account.deposit(Double.NaN);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void whenWithdrawInfinity_ThenThrowsIllegalArgumentException() throws InsufficientFundsException {
+		// Given
+		Account account = Account.open(credentials);
+
+		// When
+		account.withdraw(Double.POSITIVE_INFINITY);
+	}
 }
@@ -0,0 +1,108 @@
+package banking;
+
+import banking.behaviours.overdraft.OverdraftFacility;
+import banking.services.AccountStore;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.within;
+
+/**
+ * Fails if the successful deposit, withdraw and payment paths start allocating. Bytes are
+ * counted with the JDK's per-thread allocation counter over several rounds, the JIT may
+ * compile the code during any of them. The Gradle test JVM runs with escape analysis off,
+ * so the JIT can't remove allocations the code makes and hide them from the count.
+ */
+public class AllocationTest {
+	private static final String PASSWORD = "secret1234";
+	private static final int WARM_UP = 1_000;
+	private static final int OPERATIONS = 10_000;
+	private static final int ROUNDS = 5;
+	private static final long TOLERANCE_BYTES = 64;	// Less than one object per thousand operations
+
+	private com.sun.management.ThreadMXBean threads;
+	private Account account;
+
+	@Before
+	public void setup() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		threads = (com.sun.management.ThreadMXBean) bean;
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		AccountStore.deleteAll();
+		account = Account.open(new Account.Credentials("dave.green", PASSWORD));
+		account.deposit(1_000_000);
+		for (int i = 0; i < 10; i++) {
+			account.registerPayee("12-34-56", "1234567" + i, "Payee " + i);
+		}
+	}
+
+	@Test
+	public void whenDeposit_ThenNoAllocation() {
+		assertThat(bytesAllocated(() -> account.deposit(1))).isLessThanOrEqualTo(TOLERANCE_BYTES);
+	}
+
+	@Test
+	public void whenWithdraw_ThenNoAllocation() {
+		assertThat(bytesAllocated(() -> account.withdraw(1))).isLessThanOrEqualTo(TOLERANCE_BYTES);
+	}
+
+	@Test
+	public void whenWithdrawFromOverdraft_ThenNoAllocation() throws InsufficientFundsException {
+		// Given
+		account.withdraw(account.getBalance());
+
+		// When
+		long allocated = bytesAllocated(() -> account.withdraw(1));	// Fined for using the overdraft
+
+		// Then
+		assertThat(allocated).isLessThanOrEqualTo(TOLERANCE_BYTES);
+		// The limit is checked per withdrawal, so every operation stayed in the overdraft and was fined
+		double fined = (1 + OverdraftFacility.FINE_PERCENTAGE) * (WARM_UP + ROUNDS * OPERATIONS);
+		assertThat(account.getOverdraft().getBalance()).isCloseTo(-fined, within(0.01));
+	}
+
+	@Test
+	public void whenMakePayment_ThenNoAllocation() {
+		assertThat(bytesAllocated(() -> account.makePayment("Payee 9", 1))).isLessThanOrEqualTo(TOLERANCE_BYTES);
+	}
+
+	/**
+	 * Returns total bytes allocated by {@link #OPERATIONS} operations after warming up, less
+	 * the counter's own allocation. The total isn't divided down, so occasional allocations
+	 * aren't rounded away. The fewest bytes of any round is returned: allocation by the
+	 * operations shows up in every round, one off allocation while the JIT compiles doesn't.
+	 */
+	private long bytesAllocated(Operation operation) {
+		try {
+			for (int i = 0; i < WARM_UP; i++) {
+				operation.run();
+			}
+
+			long threadId = Thread.currentThread().getId();
+			long fewest = Long.MAX_VALUE;
+			for (int round = 0; round < ROUNDS; round++) {
+				long overhead = threads.getThreadAllocatedBytes(threadId);
+				long start = threads.getThreadAllocatedBytes(threadId);
+				overhead = start - overhead;
+				for (int i = 0; i < OPERATIONS; i++) {
+					operation.run();
+				}
+				fewest = Math.min(fewest, threads.getThreadAllocatedBytes(threadId) - start - overhead);
+			}
+			return fewest;
+		} catch (Exception e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private interface Operation {
+		void run() throws Exception;
+	}
+}
@@ -0,0 +1,178 @@
+package banking;
+
+import banking.services.AccountStore;
+import banking.services.scheduling.HoldExpiryTimer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+
+public class HoldTest {
+	private static final String USERNAME = "dave.green";
+	private static final String PASSWORD = "secret1234";
+	private Account account;
+
+	@Before
+	public void setup() {
+		AccountStore.deleteAll();
+		HoldExpiryTimer.deleteAll();
+		account = Account.open(new Account.Credentials(USERNAME, PASSWORD), Account.AccountType.SAVINGS);
+		account.deposit(100D);
+	}
+
+	@After
+	public void tearDown() {
+		HoldExpiryTimer.deleteAll();	// The wheel is shared, don't leave it advanced for other tests
+	}
+
+	@Test
+	public void whenFundsHeld_ThenPaymentLimitedToAvailableBalance() throws Exception {
+		// Given
+		account.registerPayee("001122", "61247613", "eJavaGuru");
+		account.placeHold(80D, 1, TimeUnit.DAYS);
+
+		// When
+		try {
+			account.makePayment("eJavaGuru", 50D);
+			fail("Expected InsufficientFundsException to be thrown");
+		} catch (InsufficientFundsException e) {
+			// Then
+			assertThat(account.getBalance()).isEqualTo(100D);
+		}
+	}
+
+	@Test
+	public void whenHoldPlaced_ThenExpiryTimerStarted() throws InsufficientFundsException {
+		// When
+		account.placeHold(40D, 1, TimeUnit.DAYS);
+
+		// Then
+		assertThat(HoldExpiryTimer.isRunning()).isTrue();
+	}
+
+	@Test
+	public void whenHoldPlaced_ThenAvailableBalanceReduced() throws InsufficientFundsException {
+		// When
+		account.placeHold(40D, 1, TimeUnit.DAYS);
+
+		// Then
+		assertThat(account.getAvailableBalance()).isEqualTo(60D);
+		assertThat(account.getBalance()).isEqualTo(100D);
+	}
+
+	@Test
+	public void whenHoldExceedsAvailableBalance_ThenReject() throws InsufficientFundsException {
+		// Given
+		account.placeHold(80D, 1, TimeUnit.DAYS);
+
+		// When
+		try {
+			account.placeHold(30D, 1, TimeUnit.DAYS);
+			fail("Expected InsufficientFundsException to be thrown");
+		} catch (InsufficientFundsException e) {
+			// Then
+			assertThat(account.getHeldAmount()).isEqualTo(80D);
+		}
+	}
+
+	@Test
+	public void whenCurrentAccountHold_ThenOverdraftCounted() throws InsufficientFundsException {
+		// Given
+		Account current = Account.open(new Account.Credentials(USERNAME, PASSWORD), Account.AccountType.CURRENT);
+
+		// When
+		current.placeHold(300D, 1, TimeUnit.DAYS);
+
+		// Then
+		assertThat(current.getAvailableBalance()).isEqualTo(200D);
+	}
+
+	@Test
+	public void whenHoldCaptured_ThenBalanceDebited() throws InsufficientFundsException {
+		// Given
+		Hold hold = account.placeHold(40D, 1, TimeUnit.DAYS);
+
+		// When
+		account.capture(hold);
+
+		// Then
+		assertThat(hold.getState()).isEqualTo(Hold.State.CAPTURED);
+		assertThat(account.getBalance()).isEqualTo(60D);
+		assertThat(account.getAvailableBalance()).isEqualTo(60D);
+	}
+
+	@Test
+	public void whenHoldPartiallyCaptured_ThenRemainderReleased() throws InsufficientFundsException {
+		// Given
+		Hold hold = account.placeHold(40D, 1, TimeUnit.DAYS);
+
+		// When
+		account.capture(hold, 25D);
+
+		// Then
+		assertThat(account.getBalance()).isEqualTo(75D);
+		assertThat(account.getHeldAmount()).isEqualTo(0D);
+		assertThat(account.getAvailableBalance()).isEqualTo(75D);
+	}
+
+	@Test
+	public void whenHoldReleased_ThenFundsAvailable() throws InsufficientFundsException {
+		// Given
+		Hold hold = account.placeHold(40D, 1, TimeUnit.DAYS);
+
+		// When
+		account.release(hold);
+
+		// Then
+		assertThat(hold.getState()).isEqualTo(Hold.State.RELEASED);
+		assertThat(account.getAvailableBalance()).isEqualTo(100D);
+	}
+
+	@Test
+	public void whenHoldAlreadyReleased_ThenCaptureRejected() throws InsufficientFundsException {
+		// Given
+		Hold hold = account.placeHold(40D, 1, TimeUnit.DAYS);
+		account.release(hold);
+
+		// When
+		try {
+			account.capture(hold);
+			fail("Expected IllegalStateException to be thrown");
+		} catch (IllegalStateException e) {
+			// Then
+			assertThat(e.getMessage()).isEqualTo("Hold is RELEASED");
+		}
+	}
+
+	@Test
+	public void whenFundsHeld_ThenWithdrawalLimitedToAvailableBalance() throws InsufficientFundsException {
+		// Given
+		account.placeHold(80D, 1, TimeUnit.DAYS);
+
+		// When
+		try {
+			account.withdraw(50D);
+			fail("Expected InsufficientFundsException to be thrown");
+		} catch (InsufficientFundsException e) {
+			// Then
+			assertThat(account.getBalance()).isEqualTo(100D);
+		}
+	}
+
+	@Test
+	public void whenHoldExpires_ThenFundsAvailable() throws InsufficientFundsException {
+		// Given
+		Hold hold = account.placeHold(40D, 1, TimeUnit.MINUTES);
+
+		// When
+		HoldExpiryTimer.expireDue(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(2));
+
+		// Then
+		assertThat(hold.getState()).isEqualTo(Hold.State.EXPIRED);
+		assertThat(account.getAvailableBalance()).isEqualTo(100D);
+	}
+}
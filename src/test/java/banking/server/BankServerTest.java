@@ -0,0 +1,292 @@
+package banking.server;
+
+import banking.Account;
+import banking.AccountNumber;
+import banking.InsufficientFundsException;
+import banking.client.BankClient;
+import banking.client.BankServerException;
+import banking.services.AccountStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.security.auth.login.FailedLoginException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+
+public class BankServerTest {
+	private static final Currency GBP = Currency.getInstance("GBP");
+
+	private BankServer server;
+	private BankClient client;
+
+	@Before
+	public void setup() throws Exception {
+		AccountStore.deleteAll();
+		server = new BankServer(new InetSocketAddress("localhost", 0), 2);
+		server.start();
+		client = connect();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		client.close();
+		server.close();
+	}
+
+	private BankClient connect() throws Exception {
+		return new BankClient(new InetSocketAddress("localhost", server.getPort()));
+	}
+
+	@Test
+	public void whenDepositAndWithdraw_ThenBalanceUpdated() throws Exception {
+		// Given
+		AccountNumber accountNumber = client.open("user", "password", Account.AccountType.CURRENT, GBP);
+
+		// When
+		client.deposit(accountNumber, 100);
+		double balance = client.withdraw(accountNumber, 30);
+
+		// Then
+		assertThat(balance).isEqualTo(70);
+		assertThat(client.getBalance(accountNumber)).isEqualTo(70);
+		assertThat(AccountStore.getByAccountNumber(accountNumber).getBalance()).isEqualTo(70);
+	}
+
+	@Test
+	public void whenRequestsPipelined_ThenResponsesCompleteInOrder() throws Exception {
+		// Given
+		AccountNumber accountNumber = client.open("user", "password", Account.AccountType.CURRENT, GBP);
+
+		// When
+		List<CompletableFuture<Double>> balances = new ArrayList<>();
+		for (int i = 0; i < 10_000; i++) {
+			balances.add(client.depositAsync(accountNumber, 1));
+		}
+		client.flush();
+
+		// Then
+		for (int i = 0; i < balances.size(); i++) {
+			assertThat(balances.get(i).join()).isEqualTo(i + 1);
+		}
+	}
+
+	@Test(timeout = 30_000)
+	public void whenClientDelaysReadingResponses_ThenAllRequestsStillAnswered() throws Exception {
+		// Given
+		int deposits = 50_000;	// Responses overflow the server's buffer and the socket's
+		ByteBuffer requests = ByteBuffer.allocate(1 << 22);
+		int start = requests.position();
+		requests.position(start + Integer.BYTES);
+		requests.putInt(0).put(Protocol.OPEN);
+		Protocol.putString(requests, "user");
+		Protocol.putString(requests, "password");
+		requests.put((byte) Account.AccountType.CURRENT.ordinal());
+		Protocol.putString(requests, "GBP");
+		requests.putInt(start, requests.position() - start - Integer.BYTES);
+
+		ExecutorService writer = Executors.newSingleThreadExecutor();
+		try (SocketChannel channel = SocketChannel.open()) {
+			channel.setOption(StandardSocketOptions.SO_RCVBUF, 4096);	// Server blocks and resumes many times
+			channel.connect(new InetSocketAddress("localhost", server.getPort()));
+			requests.flip();
+			while (requests.hasRemaining()) {
+				channel.write(requests);
+			}
+			AccountNumber accountNumber = Protocol.getAccountNumber(readResponse(channel, 0));
+
+			requests.clear();
+			for (int i = 1; i <= deposits; i++) {
+				requests.putInt(Protocol.HEADER_BYTES - Integer.BYTES + 16 + Double.BYTES).putInt(i).put(Protocol.DEPOSIT);
+				Protocol.putAccountNumber(requests, accountNumber);
+				requests.putDouble(1);
+			}
+			requests.flip();
+
+			// When
+			Future<?> sent = writer.submit(() -> {
+				while (requests.hasRemaining()) {
+					channel.write(requests);
+				}
+				return null;
+			});
+			Thread.sleep(200);	// Let the server fill the socket and stop
+
+			// Then
+			double balance = 0;
+			for (int i = 1; i <= deposits; i++) {
+				balance = readResponse(channel, i).getDouble();
+			}
+			sent.get();
+			assertThat(balance).isEqualTo(deposits);
+		} finally {
+			writer.shutdown();
+		}
+	}
+
+	private static ByteBuffer readResponse(SocketChannel channel, int requestId) throws IOException {
+		ByteBuffer length = readFully(channel, ByteBuffer.allocate(Integer.BYTES));
+		ByteBuffer response = readFully(channel, ByteBuffer.allocate(length.getInt()));
+		assertThat(response.getInt()).isEqualTo(requestId);
+		assertThat(response.get()).isEqualTo(Protocol.OK);
+		return response;
+	}
+
+	private static ByteBuffer readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				throw new IOException("Connection closed");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	@Test
+	public void whenRequestLargerThanInitialBuffer_ThenBufferGrows() throws Exception {
+		// Given
+		StringBuilder username = new StringBuilder();
+		while (username.length() < 8 * Connection.INITIAL_BUFFER_BYTES) {
+			username.append("dave.green");
+		}
+
+		// When
+		AccountNumber accountNumber = client.open(username.toString(), "password", Account.AccountType.CURRENT, GBP);
+
+		// Then
+		assertThat(AccountStore.getByAccountNumber(accountNumber).getCredentials().getUsername()).isEqualTo(username.toString());
+	}
+
+	@Test
+	public void whenConnectionLimitReached_ThenNewConnectionsClosed() throws Exception {
+		// Given
+		client.close();
+		server.close();
+		server = new BankServer(new InetSocketAddress("localhost", 0), 1, 1);
+		server.start();
+		client = connect();
+		client.open("user", "password", Account.AccountType.CURRENT, GBP);
+
+		// When
+		try (BankClient rejected = connect()) {
+			rejected.open("other", "password", Account.AccountType.CURRENT, GBP);
+			fail("Connection over the limit was served");
+		} catch (IOException e) {
+			// Then
+			assertThat(server.getConnectionCount()).isEqualTo(1);
+		}
+	}
+
+	@Test
+	public void whenAccountNotLoggedInOnConnection_ThenRequestRefused() throws Exception {
+		// Given
+		AccountNumber accountNumber = client.open("user", "password", Account.AccountType.CURRENT, GBP);
+
+		try (BankClient other = connect()) {
+			// When
+			try {
+				other.deposit(accountNumber, 10);
+				fail("Deposit allowed without logging in");
+			} catch (BankServerException e) {
+				// Then
+				assertThat(e.getStatus()).isEqualTo(Protocol.UNAUTHORISED);
+			}
+
+			// When
+			List<AccountNumber> accountNumbers = other.login("user", "password");
+			other.deposit(accountNumber, 10);
+
+			// Then
+			assertThat(accountNumbers).containsExactly(accountNumber);
+			assertThat(other.getBalance(accountNumber)).isEqualTo(10);
+		}
+	}
+
+	@Test(expected = FailedLoginException.class)
+	public void whenWrongPassword_ThenThrowsFailedLoginException() throws Exception {
+		// Given
+		client.open("user", "password", Account.AccountType.CURRENT, GBP);
+
+		// When
+		client.login("user", "wrong");
+	}
+
+	@Test(expected = InsufficientFundsException.class)
+	public void whenWithdrawWithNoBalance_ThenThrowsInsufficientFundsException() throws Exception {
+		// Given
+		AccountNumber accountNumber = client.open("user", "password", Account.AccountType.SAVINGS, GBP);
+
+		// When
+		client.withdraw(accountNumber, 20);
+	}
+
+	@Test
+	public void whenTransfer_ThenMovedBetweenAccounts() throws Exception {
+		// Given
+		AccountNumber from = client.open("user", "password", Account.AccountType.CURRENT, GBP);
+		AccountNumber to;
+		try (BankClient other = connect()) {
+			to = other.open("other", "password", Account.AccountType.CURRENT, GBP);
+		}
+		client.deposit(from, 100);
+
+		// When
+		double credited = client.transfer(from, to, 40);
+
+		// Then
+		assertThat(credited).isEqualTo(40);
+		assertThat(client.getBalance(from)).isEqualTo(60);
+		assertThat(AccountStore.getByAccountNumber(to).getBalance()).isEqualTo(40);
+	}
+
+	@Test
+	public void whenAmountNotFinite_ThenRequestRefusedAndBalanceUnchanged() throws Exception {
+		// Given
+		AccountNumber from = client.open("user", "password", Account.AccountType.CURRENT, GBP);
+		AccountNumber to;
+		try (BankClient other = connect()) {
+			to = other.open("other", "password", Account.AccountType.CURRENT, GBP);
+		}
+		client.deposit(from, 100);
+
+		for (double amount : new double[] {Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 0}) {
+			// When
+			try {
+				client.deposit(from, amount);
+				fail("Deposit of %s allowed", amount);
+			} catch (IllegalArgumentException e) {
+				// Then
+				assertThat(e).hasMessageContaining("positive number");
+			}
+			try {
+				client.withdraw(from, amount);
+				fail("Withdrawal of %s allowed", amount);
+			} catch (IllegalArgumentException e) {
+				assertThat(e).hasMessageContaining("positive number");
+			}
+			try {
+				client.transfer(from, to, amount);
+				fail("Transfer of %s allowed", amount);
+			} catch (IllegalArgumentException e) {
+				assertThat(e).hasMessageContaining("positive number");
+			}
+		}
+
+		// Then
+		assertThat(client.getBalance(from)).isEqualTo(100);
+		assertThat(AccountStore.getByAccountNumber(to).getBalance()).isEqualTo(0);
+	}
+}
@@ -0,0 +1,134 @@
+package banking.services;
+
+import banking.Account;
+import banking.LoginThrottledException;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.security.auth.login.FailedLoginException;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class LoginThrottleTest {
+	private static final String USERNAME = "dave.green";
+	private static final String PASSWORD = "secret1234";
+
+	@Before
+	public void setup() {
+		AccountStore.deleteAll();
+	}
+
+	@Test
+	public void whenTooManyFailures_ThenLockedOut() {
+		// Given
+		LoginThrottle throttle = new LoginThrottle(1000, 1000, 60, 100, 3, 60_000);
+
+		// When
+		throttle.recordFailure(USERNAME);
+		throttle.recordFailure(USERNAME);
+		boolean beforeLockout = throttle.tryAcquire(USERNAME);
+		throttle.recordFailure(USERNAME);
+
+		// Then
+		assertThat(beforeLockout).isTrue();
+		assertThat(throttle.tryAcquire(USERNAME)).isFalse();
+		assertThat(throttle.tryAcquire("steve.green")).isTrue();
+	}
+
+	@Test
+	public void whenLoginSucceeds_ThenLockoutCleared() {
+		// Given
+		LoginThrottle throttle = new LoginThrottle(1000, 1000, 60, 100, 1, 1);
+		throttle.recordFailure(USERNAME);
+
+		// When
+		throttle.recordSuccess(USERNAME);
+
+		// Then
+		assertThat(throttle.tryAcquire(USERNAME)).isTrue();
+	}
+
+	@Test
+	public void whenFailureAllowanceUsed_ThenThrottled() {
+		// Given
+		LoginThrottle throttle = new LoginThrottle(1000, 1000, 1, 2, 100, 60_000);
+
+		// When
+		throttle.recordFailure(USERNAME);
+		throttle.recordFailure(USERNAME);
+
+		// Then
+		assertThat(throttle.tryAcquire(USERNAME)).isFalse();
+	}
+
+	@Test
+	public void whenManyUsernamesFail_ThenTrustedUserNotEvicted() {
+		// Given
+		LoginThrottle throttle = new LoginThrottle(1000, 0.001, 60, 100, 100, 60_000, 16);
+		throttle.recordSuccess(USERNAME);
+
+		// When
+		for (int i = 0; i < 1000; i++) {
+			throttle.recordFailure("attacker" + i);
+		}
+		throttle.tryAcquire("attacker");	// Uses up the untrusted allowance
+
+		// Then
+		assertThat(throttle.tryAcquire(USERNAME)).isTrue();
+	}
+
+	@Test
+	public void whenUntrustedLimitReached_ThenTrustedUserStillAdmitted() {
+		// Given
+		LoginThrottle throttle = new LoginThrottle(1000, 0.001, 60, 100, 100, 60_000);
+		throttle.recordSuccess(USERNAME);
+
+		// When
+		boolean first = throttle.tryAcquire("attacker1");
+		boolean second = throttle.tryAcquire("attacker2");
+
+		// Then
+		assertThat(first).isTrue();
+		assertThat(second).isFalse();
+		assertThat(throttle.tryAcquire(USERNAME)).isTrue();
+	}
+
+	@Test
+	public void whenGetByUsernameThrottled_ThenNoAccountsReturned() {
+		// Given
+		AccountStore.setLoginThrottle(new LoginThrottle(1000, 1000, 60, 100, 1, 60_000));
+		Account.open(new Account.Credentials(USERNAME, PASSWORD));
+		AccountStore.getByUsername(USERNAME, "wrong");
+
+		// When
+		int found = AccountStore.getByUsername(USERNAME, PASSWORD).size();
+
+		// Then
+		assertThat(found).isEqualTo(0);
+	}
+
+	@Test
+	public void whenLoginThrottled_ThenThrottledExceptionThrown() {
+		// Given
+		AccountStore.setLoginThrottle(new LoginThrottle(1000, 1000, 60, 100, 1, 60_000));
+		Account account = Account.open(new Account.Credentials(USERNAME, PASSWORD));
+		FailedLoginException failed = null;
+		try {
+			account.login(USERNAME, "wrong");
+		} catch (FailedLoginException e) {
+			failed = e;
+		}
+
+		// When
+		FailedLoginException throttled = null;
+		try {
+			account.login(USERNAME, PASSWORD);
+		} catch (FailedLoginException e) {
+			throttled = e;
+		}
+
+		// Then
+		assertThat(failed).isNotInstanceOf(LoginThrottledException.class);
+		assertThat(throttled).isInstanceOf(LoginThrottledException.class);
+	}
+}
@@ -0,0 +1,242 @@
+package banking.services.archive;
+
+import banking.Account;
+import banking.services.AccountStore;
+import banking.services.reporting.BookReporter;
+import banking.services.reporting.BookSummary;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+
+public class AccountArchiverTest {
+	private static final String USERNAME = "dave.green";
+	private static final String PASSWORD = "secret1234";
+	private static final Currency GBP = Account.DEFAULT_CURRENCY;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Account.Credentials credentials;
+	private AccountArchive archive;
+	private AccountArchiver archiver;
+
+	@Before
+	public void setup() throws IOException {
+		AccountStore.deleteAll();
+		credentials = new Account.Credentials(USERNAME, PASSWORD);
+		archive = new AccountArchive(folder.newFile("accounts.seg").toPath());
+		AccountStore.setArchive(archive);
+		archiver = new AccountArchiver(archive, 1, TimeUnit.DAYS);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		AccountStore.deleteAll();
+		archive.close();
+	}
+
+	@Test
+	public void whenAccountClosed_ThenMovedToArchive() {
+		// Given
+		Account open = Account.open(credentials);
+		Account closed = Account.open(credentials);
+		closed.close();
+
+		// When
+		SweepReport report = archiver.sweep();
+
+		// Then
+		assertThat(report.getArchivedCount()).isEqualTo(1);
+		assertThat(report.getLiveAccountsAfter()).isEqualTo(1);
+		assertThat(archive.contains(closed.getAccountNumber())).isTrue();
+		assertThat(archive.contains(open.getAccountNumber())).isFalse();
+		assertThat(AccountStore.size()).isEqualTo(1);
+	}
+
+	@Test
+	public void whenSweepMeasuresHeap_ThenReportsHeapAndLookupLatency() {
+		// Given
+		Account.open(credentials);
+		Account.open(credentials).close();
+
+		// When
+		SweepReport measured = archiver.sweep(true);
+		SweepReport unmeasured = archiver.sweep();
+
+		// Then
+		assertThat(measured.isHeapMeasured()).isTrue();
+		assertThat(measured.getLiveHeapBefore()).isPositive();
+		assertThat(measured.getLiveHeapAfter()).isPositive();
+		assertThat(measured.getLookupNanosBefore()).isPositive();
+		assertThat(measured.getLookupNanosAfter()).isPositive();
+		assertThat(unmeasured.isHeapMeasured()).isFalse();
+		assertThat(unmeasured.toString()).contains("live heap not measured");
+	}
+
+	@Test
+	public void whenAccountDormant_ThenMovedToArchive() throws InterruptedException {
+		// Given
+		Account account = Account.open(credentials);
+		account.deposit(100D);
+		AccountArchiver dormantAfterOneMilli = new AccountArchiver(archive, 1, TimeUnit.MILLISECONDS);
+		Thread.sleep(5);
+
+		// When
+		dormantAfterOneMilli.sweep();
+
+		// Then
+		assertThat(archive.contains(account.getAccountNumber())).isTrue();
+	}
+
+	@Test
+	public void whenArchivedAccountLookedUpByUsername_ThenRestoredFromArchive() throws InterruptedException {
+		// Given
+		Account dormant = Account.open(credentials);
+		dormant.registerPayee("001122", "61247613", "eJavaGuru");
+		Thread.sleep(5);
+		new AccountArchiver(archive, 1, TimeUnit.MILLISECONDS).sweep();
+
+		// When
+		List<Account> accounts = AccountStore.getByUsername(credentials);
+
+		// Then
+		assertThat(accounts.size()).isEqualTo(1);
+		Account restored = accounts.get(0);
+		assertThat(restored).isNotSameAs(dormant);
+		assertThat(restored.getAccountNumber()).isEqualTo(dormant.getAccountNumber());
+		assertThat(restored.getPayees().get(0).getPayee()).isEqualTo("eJavaGuru");
+		assertThat(archive.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void whenClosedAccountArchived_ThenNotRestoredByUsername() {
+		// Given
+		Account closed = Account.open(credentials);
+		closed.close();
+		archiver.sweep();
+
+		// When
+		List<Account> accounts = AccountStore.getByUsername(credentials);
+
+		// Then
+		assertThat(accounts).isEmpty();
+		assertThat(archive.contains(closed.getAccountNumber())).isTrue();
+	}
+
+	@Test
+	public void whenLoginFails_ThenArchivedAccountNotRestored() throws InterruptedException {
+		// Given
+		Account dormant = Account.open(credentials);
+		Thread.sleep(5);
+		AccountArchiver dormantAfterOneMilli = new AccountArchiver(archive, 1, TimeUnit.MILLISECONDS);
+		dormantAfterOneMilli.sweep();
+		long segmentSize = archive.getSegmentSize();
+
+		// When
+		List<Account> accounts = AccountStore.getByUsername(new Account.Credentials(USERNAME, "wrong"));
+		dormantAfterOneMilli.sweep();
+
+		// Then
+		assertThat(accounts).isEmpty();
+		assertThat(archive.contains(dormant.getAccountNumber())).isTrue();
+		assertThat(archive.getSegmentSize()).isEqualTo(segmentSize);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void whenStaleArchivedObjectUsedAfterAccountArchivedAgain_ThenThrowsIllegalStateException() throws InterruptedException {
+		// Given
+		Account stale = Account.open(credentials);
+		stale.deposit(100D);
+		Thread.sleep(5);
+		AccountArchiver dormantAfterOneMilli = new AccountArchiver(archive, 1, TimeUnit.MILLISECONDS);
+		dormantAfterOneMilli.sweep();
+		AccountStore.getByAccountNumber(stale.getAccountNumber()).deposit(50D);
+		Thread.sleep(5);
+		dormantAfterOneMilli.sweep();
+
+		// When
+		stale.deposit(10D);
+	}
+
+	@Test
+	public void whenTransferToStaleArchivedObject_ThenNothingDebited() throws Exception {
+		// Given
+		Account from = Account.open(credentials);
+		from.deposit(100D);
+		Account stale = Account.open(new Account.Credentials("steve.green", PASSWORD));
+		stale.close();
+		archiver.sweep();
+		AccountStore.getByAccountNumber(stale.getAccountNumber());	// Restores a new object
+		archiver.sweep();
+
+		// When
+		try {
+			from.transfer(stale, 40D);
+			fail("Expected IllegalStateException to be thrown");
+		} catch (IllegalStateException e) {
+			// Then
+			assertThat(from.getBalance()).isEqualTo(100D);
+		}
+	}
+
+	@Test
+	public void whenArchivedAccountLookedUpByNumber_ThenRestoredFromArchive() {
+		// Given
+		Account closed = Account.open(credentials);
+		closed.close();
+		archiver.sweep();
+
+		// When
+		Account restored = AccountStore.getByAccountNumber(closed.getAccountNumber());
+
+		// Then
+		assertThat(restored).isNotNull();
+		assertThat(AccountStore.getByAccountNumber(closed.getAccountNumber())).isSameAs(restored);
+	}
+
+	@Test
+	public void whenArchivedAccountReactivated_ThenReturnedToStore() {
+		// Given
+		Account closed = Account.open(credentials);
+		closed.close();
+		archiver.sweep();
+
+		// When
+		closed.reactivate();
+
+		// Then
+		assertThat(closed.isArchived()).isFalse();
+		assertThat(closed.getStatus()).isEqualTo(Account.Status.OPEN);
+		assertThat(AccountStore.getByAccountNumber(closed.getAccountNumber())).isSameAs(closed);
+		assertThat(archive.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void whenAccountsArchived_ThenStillIncludedInBookSummary() throws InterruptedException {
+		// Given
+		Account account = Account.open(credentials, Account.AccountType.SAVINGS);
+		account.deposit(100D);
+		Account.open(credentials).close();
+		Thread.sleep(5);
+		new AccountArchiver(archive, 1, TimeUnit.MILLISECONDS).sweep();
+
+		// When
+		BookSummary summary = BookReporter.summarise();
+
+		// Then
+		assertThat(AccountStore.size()).isEqualTo(0);
+		assertThat(summary.getAccountCount()).isEqualTo(2);
+		assertThat(summary.getTotalDeposits(GBP)).isEqualTo(100D);
+		assertThat(summary.getCount(Account.Status.CLOSED)).isEqualTo(1);
+	}
+}
@@ -0,0 +1,106 @@
+package banking.services.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+
+public class BoundedExpiringCacheTest {
+	private long now;
+	private BoundedExpiringCache<String, String> cache;
+
+	@Before
+	public void setup() {
+		now = 0;
+		cache = new BoundedExpiringCache<>(1024, 10, TimeUnit.SECONDS, () -> now);
+	}
+
+	@Test
+	public void whenPutIfAbsent_ThenValueReturnedByGet() {
+		// When
+		String existing = cache.putIfAbsent("key", "value");
+
+		// Then
+		assertThat(existing).isNull();
+		assertThat(cache.get("key")).isEqualTo("value");
+	}
+
+	@Test
+	public void whenPutIfAbsentWithExistingKey_ThenExistingValueReturned() {
+		// Given
+		cache.putIfAbsent("key", "first");
+
+		// When
+		String existing = cache.putIfAbsent("key", "second");
+
+		// Then
+		assertThat(existing).isEqualTo("first");
+		assertThat(cache.get("key")).isEqualTo("first");
+	}
+
+	@Test
+	public void whenTimeToLivePassed_ThenEntryExpired() {
+		// Given
+		cache.put("key", "value");
+
+		// When
+		now += TimeUnit.SECONDS.toNanos(11);
+
+		// Then
+		assertThat(cache.get("key")).isNull();
+		assertThat(cache.putIfAbsent("key", "again")).isNull();
+	}
+
+	@Test
+	public void whenMaximumSizeExceeded_ThenSizeStaysBounded() {
+		// When
+		for (int i = 0; i < 10_000; i++) {
+			cache.put("key-" + i, "value");
+		}
+
+		// Then
+		assertThat(cache.size()).isLessThan(1024 * 11 / 10);	// Bound is approximate, segments have a little headroom
+		assertThat(cache.get("key-9999")).isEqualTo("value");
+	}
+
+	@Test
+	public void whenRemove_ThenEntryDeleted() {
+		// Given
+		cache.put("key", "value");
+
+		// When
+		cache.remove("key");
+
+		// Then
+		assertThat(cache.get("key")).isNull();
+	}
+
+	@Test
+	public void whenFullWithoutEviction_ThenNewKeysRefusedUntilEntriesExpire() {
+		// Given
+		cache = new BoundedExpiringCache<>(1, 10, TimeUnit.SECONDS, () -> now);
+		cache.putIfAbsentWithoutEviction("first", "value");
+		cache.putIfAbsentWithoutEviction("second", "value");	// One segment with a little headroom
+
+		// When
+		try {
+			cache.putIfAbsentWithoutEviction("third", "value");
+			fail("Live entry evicted");
+		} catch (IllegalStateException e) {
+			// Then
+			assertThat(cache.get("first")).isEqualTo("value");
+			assertThat(cache.get("second")).isEqualTo("value");
+		}
+		assertThat(cache.putIfAbsentWithoutEviction("first", "again")).isEqualTo("value");
+
+		// When
+		now += TimeUnit.SECONDS.toNanos(11);
+
+		// Then
+		assertThat(cache.putIfAbsentWithoutEviction("third", "value")).isNull();
+		assertThat(cache.get("third")).isEqualTo("value");
+	}
+}
@@ -0,0 +1,72 @@
+package banking.services.fx;
+
+import org.junit.Test;
+
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.within;
+
+public class FxRatesTest {
+	private static final Currency GBP = Currency.getInstance("GBP");
+	private static final Currency EUR = Currency.getInstance("EUR");
+	private static final Currency JPY = Currency.getInstance("JPY");
+	private static final Currency USD = Currency.getInstance("USD");
+
+	private FxRates rates() {
+		Map<Currency, Double> unitsPerBase = new HashMap<>();
+		unitsPerBase.put(EUR, 1.16);
+		unitsPerBase.put(JPY, 190.0);
+		return new FxRates(GBP, unitsPerBase);
+	}
+
+	@Test
+	public void whenCrossRate_ThenDerivedFromBase() {
+		// When
+		double rate = rates().rate(EUR, JPY);
+
+		// Then
+		assertThat(rate).isCloseTo(190.0 / 1.16, within(1e-9));
+		assertThat(rates().rate(GBP, EUR)).isEqualTo(1.16);
+	}
+
+	@Test
+	public void whenConvert_ThenRoundedToMinorUnit() {
+		// Given
+		FxRates rates = rates();
+
+		// When
+		double euros = rates.convert(10.01, GBP, EUR);
+		double yen = rates.convert(10.01, GBP, JPY);
+
+		// Then
+		assertThat(euros).isEqualTo(11.61);
+		assertThat(yen).isEqualTo(1902.0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void whenNoRateForCurrency_ThenThrowsIllegalArgumentException() {
+		// When
+		rates().convert(10, GBP, USD);
+	}
+
+	@Test
+	public void whenRatesPublished_ThenCurrentRatesReplaced() {
+		// Given
+		FxRates rates = rates();
+
+		// When
+		FxRateStore.publish(rates);
+
+		// Then
+		try {
+			assertThat(FxRateStore.current()).isSameAs(rates);
+			assertThat(FxRateStore.current().supports(EUR)).isTrue();
+		} finally {
+			FxRateStore.deleteAll();
+		}
+		assertThat(FxRateStore.current().supports(EUR)).isFalse();
+	}
+}
@@ -0,0 +1,159 @@
+package banking.services.io;
+
+import banking.Account;
+import banking.AccountNumber;
+import banking.services.AccountStore;
+import banking.services.archive.AccountArchive;
+import banking.services.archive.AccountArchiver;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class AccountImporterTest {
+	private static final String PASSWORD = "secret1234";
+	private static final Currency EUR = Currency.getInstance("EUR");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Before
+	public void setup() {
+		AccountStore.deleteAll();
+	}
+
+	@Test
+	public void whenCsvExportedAndLoaded_ThenAccountsRestored() throws IOException {
+		roundTrip(BulkFormat.CSV);
+	}
+
+	@Test
+	public void whenBinaryExportedAndLoaded_ThenAccountsRestored() throws IOException {
+		roundTrip(BulkFormat.BINARY);
+	}
+
+	@Test
+	public void whenLoadedTwice_ThenExistingAccountsSkipped() throws IOException {
+		// Given
+		Account.open(new Account.Credentials("dave.green", PASSWORD));
+		Path file = folder.newFile().toPath();
+		AccountExporter.export(AccountStore.all(), file, BulkFormat.BINARY);
+
+		// When
+		long added = AccountImporter.load(file, BulkFormat.BINARY);
+
+		// Then
+		assertThat(added).isEqualTo(0);
+		assertThat(AccountStore.size()).isEqualTo(1);
+	}
+
+	@Test
+	public void whenBookExported_ThenArchivedAccountsIncluded() throws IOException {
+		// Given
+		Account live = Account.open(new Account.Credentials("dave.green", PASSWORD));
+		Account closed = Account.open(new Account.Credentials("dave.green", PASSWORD));
+		closed.close();
+		try (AccountArchive archive = new AccountArchive(folder.newFile().toPath())) {
+			AccountStore.setArchive(archive);
+			new AccountArchiver(archive, 1, TimeUnit.DAYS).sweep();
+			Path file = folder.newFile().toPath();
+
+			// When
+			long liveOnly = AccountExporter.export(AccountStore.all(), folder.newFile().toPath(), BulkFormat.BINARY);
+			long exported = AccountExporter.exportBook(file, BulkFormat.BINARY);
+			AccountStore.deleteAll();
+			AccountImporter.load(file, BulkFormat.BINARY);
+
+			// Then
+			assertThat(liveOnly).isEqualTo(1);
+			assertThat(exported).isEqualTo(2);
+			assertThat(AccountStore.getByAccountNumber(live.getAccountNumber())).isNotNull();
+			assertThat(AccountStore.getByAccountNumber(closed.getAccountNumber()).getStatus()).isEqualTo(Account.Status.CLOSED);
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void whenCsvMalformed_ThenThrowsIOException() throws IOException {
+		// Given
+		Path file = folder.newFile().toPath();
+		Files.write(file, (AccountCsv.HEADER + "\nnot,an,account\n").getBytes(StandardCharsets.UTF_8));
+
+		// When
+		AccountImporter.load(file, BulkFormat.CSV);
+	}
+
+	@Test(expected = IOException.class, timeout = 10_000)
+	public void whenBlockLengthNegative_ThenThrowsIOException() throws IOException {
+		// Given
+		Account.open(new Account.Credentials("dave.green", PASSWORD));
+		Path file = folder.newFile().toPath();
+		AccountExporter.export(AccountStore.all(), file, BulkFormat.BINARY);
+		ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+		bytes.putInt(Integer.BYTES * 2, -8);	// After the magic number and block count
+		Files.write(file, bytes.array());
+
+		// When
+		AccountImporter.load(file, BulkFormat.BINARY);
+	}
+
+	@Test(expected = IOException.class)
+	public void whenAccountTypeUnknown_ThenThrowsIOException() throws IOException {
+		// Given
+		Account account = Account.open(new Account.Credentials("dave.green", PASSWORD));
+		Path file = folder.newFile().toPath();
+		AccountExporter.export(AccountStore.all(), file, BulkFormat.BINARY);
+		AccountStore.deleteAll();
+		ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+		int typeOffset = Integer.BYTES * 3 + 1 + Long.BYTES * 2	// Magic, block header, version and account number
+				+ 2 + account.getCredentials().getUsername().length()
+				+ 2 + account.getCredentials().getPasswordHash().length();
+		bytes.put(typeOffset, (byte) 99);
+		Files.write(file, bytes.array());
+
+		// When
+		AccountImporter.load(file, BulkFormat.BINARY);
+	}
+
+	private void roundTrip(BulkFormat format) throws IOException {
+		// Given
+		List<AccountNumber> numbers = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			Account account = Account.open(new Account.Credentials("user" + (i % 200), PASSWORD),
+					i % 2 == 0 ? Account.AccountType.CURRENT : Account.AccountType.SAVINGS, i % 7 == 0 ? EUR : Account.DEFAULT_CURRENCY);
+			account.deposit(i + 0.25);
+			account.registerPayee("12-34-56", "1234567" + i, "Green, \"Dave\" " + i, i % 3 == 0 ? EUR : null);
+			numbers.add(account.getAccountNumber());
+		}
+		Path file = folder.newFile().toPath();
+		long exported = AccountExporter.export(AccountStore.all(), file, format);
+		AccountStore.deleteAll();
+
+		// When
+		long loaded = AccountImporter.load(file, format, 4096);	// Small chunks so the file is split
+
+		// Then
+		assertThat(exported).isEqualTo(500);
+		assertThat(loaded).isEqualTo(500);
+		assertThat(AccountStore.getByUsername(new Account.Credentials("user7", PASSWORD)).size()).isEqualTo(3);
+
+		Account account = AccountStore.getByAccountNumber(numbers.get(7));
+		assertThat(account.getBalance()).isEqualTo(7.25);
+		assertThat(account.getAccountType()).isEqualTo(Account.AccountType.SAVINGS);
+		assertThat(account.getCurrency()).isEqualTo(EUR);
+		assertThat(account.getPayees().get(0).getPayee()).isEqualTo("Green, \"Dave\" 7");
+		assertThat(account.getPayees().get(0).getCurrency()).isNull();
+		assertThat(AccountStore.getByAccountNumber(numbers.get(9)).getPayees().get(0).getCurrency()).isEqualTo(EUR);
+	}
+}
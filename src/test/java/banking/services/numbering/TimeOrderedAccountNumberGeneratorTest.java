@@ -0,0 +1,74 @@
+package banking.services.numbering;
+
+import banking.AccountNumber;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class TimeOrderedAccountNumberGeneratorTest {
+	private static final int THREADS = 16;
+	private static final int PER_THREAD = 20_000;
+
+	@Test
+	public void whenGeneratedOnOneThread_ThenNumbersIncrease() {
+		// Given
+		TimeOrderedAccountNumberGenerator generator = new TimeOrderedAccountNumberGenerator(1);
+		AccountNumber previous = generator.next();
+
+		// When
+		for (int i = 0; i < PER_THREAD; i++) {
+			AccountNumber next = generator.next();
+
+			// Then
+			assertThat(next.isCompact()).isTrue();
+			assertThat(next).isGreaterThan(previous);
+			previous = next;
+		}
+	}
+
+	@Test
+	public void whenGeneratedAcrossThreads_ThenNumbersUnique() throws Exception {
+		// Given
+		TimeOrderedAccountNumberGenerator generator = new TimeOrderedAccountNumberGenerator(1);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		List<Future<List<AccountNumber>>> results = new ArrayList<>();
+
+		// When
+		for (int t = 0; t < THREADS; t++) {
+			results.add(executor.submit(() -> {
+				List<AccountNumber> numbers = new ArrayList<>(PER_THREAD);
+				for (int i = 0; i < PER_THREAD; i++) {
+					numbers.add(generator.next());
+				}
+				return numbers;
+			}));
+		}
+		Set<AccountNumber> unique = new HashSet<>();
+		for (Future<List<AccountNumber>> result : results) {
+			unique.addAll(result.get());
+		}
+		executor.shutdown();
+
+		// Then
+		assertThat(unique.size()).isEqualTo(THREADS * PER_THREAD);
+	}
+
+	@Test
+	public void whenGeneratedOnDifferentNodes_ThenNodeIdEmbedded() {
+		// When
+		long first = new TimeOrderedAccountNumberGenerator(1).next().longValue();
+		long second = new TimeOrderedAccountNumberGenerator(2).next().longValue();
+
+		// Then
+		assertThat((first >>> 12) & TimeOrderedAccountNumberGenerator.MAX_NODE_ID).isEqualTo(1);
+		assertThat((second >>> 12) & TimeOrderedAccountNumberGenerator.MAX_NODE_ID).isEqualTo(2);
+	}
+}
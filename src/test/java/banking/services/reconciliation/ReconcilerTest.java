@@ -0,0 +1,117 @@
+package banking.services.reconciliation;
+
+import banking.Account;
+import banking.AccountNumber;
+import banking.InsufficientFundsException;
+import banking.services.AccountStore;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class ReconcilerTest {
+	private static final String PASSWORD = "secret1234";
+
+	@Before
+	public void setup() {
+		AccountStore.deleteAll();
+	}
+
+	@Test
+	public void whenAccountsChanged_ThenTreeMatchesRebuiltTree() throws InsufficientFundsException {
+		// Given
+		Account account = open(100);
+		Account other = open(200);
+
+		// When
+		account.deposit(50);
+		other.withdraw(200);
+		other.close();
+
+		// Then
+		assertThat(AccountStore.getStateTree().getRootHash()).isEqualTo(copyOfStore().tree.getRootHash());
+	}
+
+	@Test
+	public void whenStoresAgree_ThenOnlyRootCompared() throws Exception {
+		// Given
+		open(100);
+		open(200);
+
+		// When
+		Reconciliation reconciliation = Reconciler.reconcile(new StoreStateView(), copyOfStore());
+
+		// Then
+		assertThat(reconciliation.isConsistent()).isTrue();
+		assertThat(reconciliation.getHashesCompared()).isEqualTo(1);
+	}
+
+	@Test
+	public void whenAccountsDiverge_ThenDivergentAccountsFound() throws Exception {
+		// Given
+		for (int i = 0; i < 1000; i++) {
+			open(i);
+		}
+		CopiedStore standby = copyOfStore();
+		Account changed = open(0);
+		standby.add(changed);
+		changed.deposit(10);
+		Account missing = open(5);
+
+		// When
+		Reconciliation reconciliation = Reconciler.reconcile(new StoreStateView(), standby);
+
+		// Then
+		assertThat(reconciliation.getDivergent()).containsOnly(changed.getAccountNumber(), missing.getAccountNumber());
+		assertThat(reconciliation.getLeavesCompared()).isLessThanOrEqualTo(2);
+		assertThat(reconciliation.getHashesCompared()).isLessThan(200);
+	}
+
+	private Account open(double balance) {
+		Account account = Account.open(new Account.Credentials("dave.green", PASSWORD), Account.AccountType.SAVINGS);
+		account.deposit(balance);
+		return account;
+	}
+
+	private CopiedStore copyOfStore() {
+		CopiedStore copy = new CopiedStore();
+		for (Account account : AccountStore.all()) {
+			copy.add(account);
+		}
+		return copy;
+	}
+
+	/**
+	 * Stands in for another process's store, holding a copy of account state hashes
+	 */
+	private static class CopiedStore implements IStateTreeView {
+		private final StateTree tree = new StateTree();
+		private final Map<AccountNumber, Long> hashes = new HashMap<>();
+
+		private void add(Account account) {
+			tree.add(account.getAccountNumber(), account.getStateHash());
+			hashes.put(account.getAccountNumber(), account.getStateHash());
+		}
+
+		@Override
+		public long[] getHashes(int level, int[] indexes) {
+			return tree.getHashes(level, indexes);
+		}
+
+		@Override
+		public Map<AccountNumber, Long> getAccountHashes(int[] leaves) {
+			Map<AccountNumber, Long> result = new HashMap<>();
+			for (int leaf : leaves) {
+				hashes.forEach((accountNumber, hash) -> {
+					if (StateTree.leafOf(accountNumber) == leaf) {
+						result.put(accountNumber, hash);
+					}
+				});
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package banking.services.reporting;
+
+import banking.Account;
+import banking.InsufficientFundsException;
+import banking.services.AccountStore;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Currency;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class BookReporterTest {
+	private static final String PASSWORD = "secret1234";
+	private static final Currency GBP = Account.DEFAULT_CURRENCY;
+
+	@Before
+	public void setup() {
+		AccountStore.deleteAll();
+	}
+
+	@Test
+	public void whenSummarise_ThenTotalsAndCountsReturned() throws InsufficientFundsException {
+		// Given
+		Account current = Account.open(new Account.Credentials("dave.green", PASSWORD), Account.AccountType.CURRENT);
+		current.withdraw(100D);
+		Account savings = Account.open(new Account.Credentials("steve.green", PASSWORD), Account.AccountType.SAVINGS);
+		savings.deposit(250D);
+		Account closed = Account.open(new Account.Credentials("steve.green", PASSWORD), Account.AccountType.SAVINGS);
+		closed.close();
+
+		// When
+		BookSummary summary = BookReporter.summarise();
+
+		// Then
+		assertThat(summary.getAccountCount()).isEqualTo(3);
+		assertThat(summary.getTotalDeposits(GBP)).isEqualTo(250D);
+		assertThat(summary.getTotalOverdraftExposure(GBP)).isEqualTo(-current.getBalance());
+		assertThat(summary.getCount(Account.AccountType.CURRENT)).isEqualTo(1);
+		assertThat(summary.getCount(Account.AccountType.SAVINGS)).isEqualTo(2);
+		assertThat(summary.getCount(Account.Status.OPEN)).isEqualTo(2);
+		assertThat(summary.getCount(Account.Status.CLOSED)).isEqualTo(1);
+	}
+
+	@Test
+	public void whenSummariseManyAccounts_ThenParallelTotalsMatch() {
+		// Given
+		for (int i = 0; i < 10_000; i++) {
+			Account.open(new Account.Credentials("user" + (i % 100), PASSWORD), Account.AccountType.SAVINGS).deposit(1D);
+		}
+
+		// When
+		BookSummary summary = BookReporter.summarise();
+
+		// Then
+		assertThat(summary.getAccountCount()).isEqualTo(10_000);
+		assertThat(summary.getTotalDeposits(GBP)).isEqualTo(10_000D);
+	}
+
+	@Test
+	public void whenAccountChangedAfterSnapshotBegan_ThenSnapshotStateReturned() {
+		// Given
+		Account account = Account.open(new Account.Credentials("dave.green", PASSWORD), Account.AccountType.SAVINGS);
+		account.deposit(100D);
+		long epoch = AccountStore.beginSnapshot();
+		Account openedLater = Account.open(new Account.Credentials("steve.green", PASSWORD), Account.AccountType.SAVINGS);
+
+		// When
+		account.deposit(50D);
+		account.deposit(25D);
+		BookSummary summary = new BookSummary();
+		boolean visited = account.visitState(epoch, summary);
+		boolean visitedLater = openedLater.visitState(epoch, summary);
+
+		// Then
+		assertThat(visited).isTrue();
+		assertThat(visitedLater).isFalse();
+		assertThat(summary.getTotalDeposits(GBP)).isEqualTo(100D);
+		assertThat(account.getBalance()).isEqualTo(175D);
+	}
+
+	@Test(timeout = 30_000)
+	public void whenTransfersRunDuringSnapshots_ThenEverySnapshotBalances() throws Exception {
+		// Given
+		Account[] accounts = new Account[4];
+		for (int i = 0; i < accounts.length; i++) {
+			accounts[i] = Account.open(new Account.Credentials("user" + i, PASSWORD), Account.AccountType.SAVINGS);
+			accounts[i].deposit(1_000D);
+		}
+		AtomicBoolean running = new AtomicBoolean(true);
+		Thread transfers = new Thread(() -> {
+			for (int i = 0; running.get(); i++) {
+				try {
+					accounts[i % accounts.length].transfer(accounts[(i + 1) % accounts.length], 1D);
+				} catch (InsufficientFundsException e) {
+					throw new AssertionError(e);
+				}
+			}
+		});
+		transfers.start();
+
+		try {
+			for (int i = 0; i < 1_000; i++) {
+				// When
+				BookSummary summary = BookReporter.summarise();
+
+				// Then
+				assertThat(summary.getTotalDeposits(GBP)).isEqualTo(4_000D);
+			}
+		} finally {
+			running.set(false);
+			transfers.join();
+		}
+	}
+
+	@Test
+	public void whenAccountsInDifferentCurrencies_ThenTotalledPerCurrency() {
+		// Given
+		Currency eur = Currency.getInstance("EUR");
+		Account.open(new Account.Credentials("dave.green", PASSWORD), Account.AccountType.SAVINGS).deposit(100D);
+		Account.open(new Account.Credentials("steve.green", PASSWORD), Account.AccountType.SAVINGS, eur).deposit(30D);
+
+		// When
+		BookSummary summary = BookReporter.summarise();
+
+		// Then
+		assertThat(summary.getCurrencies()).containsOnly(GBP, eur);
+		assertThat(summary.getTotalDeposits(GBP)).isEqualTo(100D);
+		assertThat(summary.getTotalDeposits(eur)).isEqualTo(30D);
+	}
+}
@@ -0,0 +1,151 @@
+package banking.services.scheduling;
+
+import banking.Account;
+import banking.services.AccountStore;
+import banking.services.velocity.VelocityLimit;
+import banking.services.velocity.VelocityRules;
+import banking.services.velocity.VelocityWindow;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+
+public class PaymentSchedulerTest {
+	private static final String PAYEE = "eJavaGuru";
+	private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+	private Account account;
+	private PaymentScheduler scheduler;
+	private long now;
+
+	@Before
+	public void setup() {
+		AccountStore.deleteAll();
+		account = Account.open(new Account.Credentials("dave.green", "secret1234"));
+		account.deposit(1000D);
+		account.registerPayee("001122", "61247613", PAYEE);
+		scheduler = new PaymentScheduler(1000, 0, 1000);
+		now = System.currentTimeMillis();
+	}
+
+	@After
+	public void tearDown() {
+		VelocityRules.deleteAll();
+	}
+
+	@Test
+	public void whenPaymentDue_ThenPaymentMade() {
+		// Given
+		scheduler.schedule(account.getAccountNumber(), PAYEE, 100D, now + HOUR);
+
+		// When
+		int early = scheduler.runDue(now + HOUR - 1000);
+		int due = scheduler.runDue(now + HOUR + 1000);
+
+		// Then
+		assertThat(early).isEqualTo(0);
+		assertThat(due).isEqualTo(1);
+		assertThat(account.getBalance()).isEqualTo(900D);
+		assertThat(scheduler.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void whenStandingOrder_ThenPaymentRepeats() {
+		// Given
+		scheduler.scheduleRecurring(account.getAccountNumber(), PAYEE, 100D, now + HOUR, 1, TimeUnit.DAYS);
+
+		// When
+		for (int day = 0; day < 3; day++) {
+			scheduler.runDue(now + HOUR + TimeUnit.DAYS.toMillis(day) + 1000);
+		}
+
+		// Then
+		assertThat(account.getBalance()).isEqualTo(700D);
+		assertThat(scheduler.getExecutedCount()).isEqualTo(3);
+		assertThat(scheduler.size()).isEqualTo(1);
+	}
+
+	@Test
+	public void whenStandingOrderCancelled_ThenNoPaymentMade() {
+		// Given
+		ScheduledPayment payment = scheduler.scheduleRecurring(account.getAccountNumber(), PAYEE, 100D, now + HOUR, 1, TimeUnit.DAYS);
+
+		// When
+		scheduler.cancel(payment);
+		scheduler.runDue(now + TimeUnit.DAYS.toMillis(3));
+
+		// Then
+		assertThat(account.getBalance()).isEqualTo(1000D);
+		assertThat(scheduler.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void whenPaymentsSpread_ThenMadeWithinWindow() {
+		// Given
+		PaymentScheduler spreading = new PaymentScheduler(1000, HOUR, 1000);
+		spreading.schedule(account.getAccountNumber(), PAYEE, 100D, now + HOUR);
+		spreading.schedule(account.getAccountNumber(), PAYEE, 50D, now + HOUR);
+
+		// When
+		int made = spreading.runDue(now + 2 * HOUR + 1000);
+
+		// Then
+		assertThat(made).isEqualTo(2);
+		assertThat(account.getBalance()).isEqualTo(850D);
+	}
+
+	@Test
+	public void whenPayeeNotRegistered_ThenPaymentFailed() {
+		// Given
+		scheduler.schedule(account.getAccountNumber(), "dave", 100D, now + HOUR);
+
+		// When
+		scheduler.runDue(now + 2 * HOUR);
+
+		// Then
+		assertThat(scheduler.getFailedCount()).isEqualTo(1);
+		assertThat(account.getBalance()).isEqualTo(1000D);
+	}
+
+	@Test
+	public void whenPaymentOverVelocityLimit_ThenFailedAndOtherPaymentsMade() {
+		// Given
+		VelocityRules.setLimits(Account.AccountType.CURRENT, new VelocityLimit(VelocityWindow.DAY, 1, 1000D));
+		Account other = Account.open(new Account.Credentials("steve.green", "secret1234"));
+		other.deposit(1000D);
+		other.registerPayee("001122", "61247613", PAYEE);
+		for (Account payer : new Account[] { account, other }) {
+			scheduler.scheduleRecurring(payer.getAccountNumber(), PAYEE, 100D, now + HOUR, 1, TimeUnit.DAYS);
+			scheduler.schedule(payer.getAccountNumber(), PAYEE, 100D, now + HOUR);
+		}
+
+		// When
+		int made = scheduler.runDue(now + HOUR + 1000);
+
+		// Then
+		assertThat(made).isEqualTo(2);
+		assertThat(scheduler.getFailedCount()).isEqualTo(2);
+		assertThat(account.getBalance()).isEqualTo(900D);
+		assertThat(other.getBalance()).isEqualTo(900D);
+		assertThat(scheduler.size()).isEqualTo(2);	// Standing orders still scheduled
+	}
+
+	@Test
+	public void whenSchedulerFull_ThenReject() {
+		// Given
+		PaymentScheduler small = new PaymentScheduler(1000, 0, 1);
+		small.schedule(account.getAccountNumber(), PAYEE, 100D, now + HOUR);
+
+		// When
+		try {
+			small.schedule(account.getAccountNumber(), PAYEE, 100D, now + HOUR);
+			fail("Expected IllegalStateException to be thrown");
+		} catch (IllegalStateException e) {
+			assertThat(e.getMessage()).isEqualTo("Payment scheduler is full");
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package banking.services.scheduling;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class TimingWheelTest {
+	@Test
+	public void whenDeadlineReached_ThenEntryExpired() {
+		// Given
+		TimingWheel<TimingWheel.Entry> wheel = new TimingWheel<>(0);
+		TimingWheel.Entry entry = new TimingWheel.Entry();
+		wheel.add(entry, 10);
+		List<TimingWheel.Entry> expired = new ArrayList<>();
+
+		// When
+		wheel.advanceTo(9, expired::add);
+		int expiredBeforeDeadline = expired.size();
+		wheel.advanceTo(10, expired::add);
+
+		// Then
+		assertThat(expiredBeforeDeadline).isEqualTo(0);
+		assertThat(expired).containsExactly(entry);
+		assertThat(entry.isScheduled()).isFalse();
+		assertThat(wheel.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void whenEntryCancelled_ThenNotExpired() {
+		// Given
+		TimingWheel<TimingWheel.Entry> wheel = new TimingWheel<>(0);
+		TimingWheel.Entry entry = new TimingWheel.Entry();
+		wheel.add(entry, 100_000);
+		List<TimingWheel.Entry> expired = new ArrayList<>();
+
+		// When
+		boolean cancelled = wheel.cancel(entry);
+		wheel.advanceTo(200_000, expired::add);
+
+		// Then
+		assertThat(cancelled).isTrue();
+		assertThat(expired).isEmpty();
+		assertThat(wheel.cancel(entry)).isFalse();
+	}
+
+	@Test
+	public void whenDeadlinesSpanLevels_ThenEachExpiredOnItsTick() {
+		// Given
+		TimingWheel<TestEntry> wheel = new TimingWheel<>(12_345);
+		Random random = new Random(42);
+		List<TestEntry> entries = new ArrayList<>();
+		for (int i = 0; i < 10_000; i++) {
+			TestEntry entry = new TestEntry();
+			// Deadlines from the past up to several levels ahead
+			wheel.add(entry, 12_345 + (long) (Math.pow(random.nextDouble(), 4) * 20_000_000) - 10);
+			entries.add(entry);
+		}
+
+		// When
+		wheel.advanceTo(12_345 + 20_000_000, entry -> entry.expiredAt = wheel.getCurrentTick());
+
+		// Then
+		for (TestEntry entry : entries) {
+			assertThat(entry.expiredAt).isEqualTo(Math.max(entry.getDeadline(), 12_346));
+		}
+	}
+
+	private static class TestEntry extends TimingWheel.Entry {
+		private long expiredAt;
+	}
+}
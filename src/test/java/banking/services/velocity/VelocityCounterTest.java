@@ -0,0 +1,131 @@
+package banking.services.velocity;
+
+import banking.Account;
+import banking.InsufficientFundsException;
+import banking.PayeeNotFoundException;
+import banking.VelocityLimitExceededException;
+import banking.services.AccountStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+
+public class VelocityCounterTest {
+	private static final long NOW = 1_600_000_000_000L;
+
+	@Before
+	public void setup() {
+		AccountStore.deleteAll();
+		VelocityRules.deleteAll();
+	}
+
+	@After
+	public void tearDown() {
+		VelocityRules.deleteAll();
+	}
+
+	@Test
+	public void whenCountLimitReached_ThenReject() {
+		// Given
+		VelocityCounter counter = new VelocityCounter();
+		VelocityLimit[] limits = { new VelocityLimit(VelocityWindow.MINUTE, 2, 1000D) };
+		counter.record(10D, NOW);
+		counter.record(10D, NOW);
+
+		// When
+		try {
+			counter.check(10D, limits, NOW);
+			fail("Expected VelocityLimitExceededException to be thrown");
+		} catch (VelocityLimitExceededException e) {
+			// Then
+			assertThat(e.getMessage()).isEqualTo("MINUTE velocity limit exceeded");
+		}
+	}
+
+	@Test
+	public void whenAmountLimitReached_ThenReject() {
+		// Given
+		VelocityCounter counter = new VelocityCounter();
+		VelocityLimit[] limits = { new VelocityLimit(VelocityWindow.DAY, 100, 500D) };
+		counter.record(450D, NOW);
+
+		// When
+		try {
+			counter.check(60D, limits, NOW + TimeUnit.HOURS.toMillis(5));
+			fail("Expected VelocityLimitExceededException to be thrown");
+		} catch (VelocityLimitExceededException e) {
+			// Then
+			assertThat(e.getMessage()).isEqualTo("DAY velocity limit exceeded");
+		}
+	}
+
+	@Test
+	public void whenWindowHasPassed_ThenEarlierActivityNotCounted() {
+		// Given
+		VelocityCounter counter = new VelocityCounter();
+		VelocityLimit[] limits = { new VelocityLimit(VelocityWindow.MINUTE, 1, 1000D) };
+		counter.record(10D, NOW);
+
+		// When
+		counter.check(10D, limits, NOW + TimeUnit.MINUTES.toMillis(2));
+
+		// Then no exception, the minute has moved on
+	}
+
+	@Test
+	public void whenAccountTypeHasLimits_ThenWithdrawalsChecked() throws InsufficientFundsException {
+		// Given
+		VelocityRules.setLimits(Account.AccountType.SAVINGS, new VelocityLimit(VelocityWindow.HOUR, 2, 1000D));
+		Account account = Account.open(new Account.Credentials("dave.green", "secret1234"), Account.AccountType.SAVINGS);
+		account.deposit(500D);
+		account.withdraw(10D);
+		account.withdraw(10D);
+
+		// When
+		try {
+			account.withdraw(10D);
+			fail("Expected VelocityLimitExceededException to be thrown");
+		} catch (VelocityLimitExceededException e) {
+			// Then
+			assertThat(account.getBalance()).isEqualTo(480D);
+		}
+	}
+
+	@Test
+	public void whenAccountTypeHasLimits_ThenPaymentsChecked() throws PayeeNotFoundException, InsufficientFundsException {
+		// Given
+		VelocityRules.setLimits(Account.AccountType.CURRENT, new VelocityLimit(VelocityWindow.DAY, 10, 150D));
+		Account account = Account.open(new Account.Credentials("dave.green", "secret1234"));
+		account.deposit(500D);
+		account.registerPayee("001122", "61247613", "eJavaGuru");
+		account.makePayment("eJavaGuru", 100D);
+
+		// When
+		try {
+			account.makePayment("eJavaGuru", 100D);
+			fail("Expected VelocityLimitExceededException to be thrown");
+		} catch (VelocityLimitExceededException e) {
+			// Then
+			assertThat(account.getBalance()).isEqualTo(400D);
+		}
+	}
+
+	@Test
+	public void whenAccountTypeHasNoLimits_ThenNotChecked() throws InsufficientFundsException {
+		// Given
+		VelocityRules.setLimits(Account.AccountType.CURRENT, new VelocityLimit(VelocityWindow.MINUTE, 1, 1D));
+		Account account = Account.open(new Account.Credentials("dave.green", "secret1234"), Account.AccountType.SAVINGS);
+		account.deposit(500D);
+
+		// When
+		account.withdraw(100D);
+		account.withdraw(100D);
+
+		// Then
+		assertThat(account.getBalance()).isEqualTo(300D);
+	}
+}
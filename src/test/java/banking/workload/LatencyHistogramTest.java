@@ -0,0 +1,52 @@
+package banking.workload;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class LatencyHistogramTest {
+	@Test
+	public void whenValuesRecorded_ThenPercentilesWithinOnePercent() {
+		// Given
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		// When
+		for (long value = 1; value <= 1_000_000; value++) {
+			histogram.record(value * 1000);
+		}
+
+		// Then
+		assertThat(histogram.getTotalCount()).isEqualTo(1_000_000);
+		assertThat(histogram.getValueAtPercentile(50)).isBetween(500_000_000L, 505_000_000L);
+		assertThat(histogram.getValueAtPercentile(99)).isBetween(990_000_000L, 999_900_000L);
+		assertThat(histogram.getValueAtPercentile(100)).isEqualTo(1_000_000_000L);
+		assertThat(histogram.getMax()).isEqualTo(1_000_000_000L);
+	}
+
+	@Test
+	public void whenIndexed_ThenBucketHoldsValue() {
+		// When / Then
+		for (long value = 0; value < 1L << 30; value = value * 3 / 2 + 1) {
+			int index = LatencyHistogram.index(value);
+			assertThat(LatencyHistogram.highestValue(index)).isGreaterThanOrEqualTo(value);
+			assertThat(index == 0 || LatencyHistogram.highestValue(index - 1) < value).isTrue();
+		}
+	}
+
+	@Test
+	public void whenHistogramsAdded_ThenCountsCombined() {
+		// Given
+		LatencyHistogram first = new LatencyHistogram();
+		LatencyHistogram second = new LatencyHistogram();
+		first.record(100);
+		second.record(300);
+
+		// When
+		first.add(second);
+
+		// Then
+		assertThat(first.getTotalCount()).isEqualTo(2);
+		assertThat(first.getMax()).isEqualTo(300);
+		assertThat(first.getMean()).isEqualTo(200.0);
+	}
+}
@@ -0,0 +1,49 @@
+package banking.workload;
+
+import banking.services.AccountStore;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class LoadGeneratorTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Before
+	public void setup() {
+		AccountStore.deleteAll();
+	}
+
+	@Test
+	public void whenOpenLoopRun_ThenReportWritten() throws Exception {
+		// Given
+		Path file = folder.getRoot().toPath().resolve("report.txt");
+		WorkloadConfig config = WorkloadConfig.parse("accounts=200", "payees=2", "threads=2", "rate=2000",
+				"warmup=0", "duration=1", "report=" + file);
+		LoadGenerator generator = new LoadGenerator(config);
+		generator.setUp();
+
+		// When
+		WorkloadReport report = generator.run();
+		report.write(file);
+
+		// Then
+		assertThat(report.getTotalCount()).isBetween(1000L, 2100L);
+		for (Operation operation : Operation.values()) {
+			assertThat(report.getErrors(operation)).isEqualTo(0);
+		}
+		assertThat(new String(Files.readAllBytes(file))).contains("open loop at 2000", "DEPOSIT response time distribution");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void whenUnknownSetting_ThenThrowsIllegalArgumentException() throws Exception {
+		// When
+		WorkloadConfig.parse("acounts=10");
+	}
+}
@@ -0,0 +1,55 @@
+package banking.workload;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class ZipfianGeneratorTest {
+	@Test
+	public void whenSameSeed_ThenSameSequence() {
+		// Given
+		ZipfianGenerator generator = new ZipfianGenerator(1000, 0.99);
+		SplittableRandom first = new SplittableRandom(42);
+		SplittableRandom second = new SplittableRandom(42);
+
+		// When / Then
+		for (int i = 0; i < 1000; i++) {
+			assertThat(generator.next(first)).isEqualTo(generator.next(second));
+		}
+	}
+
+	@Test
+	public void whenSkewed_ThenLowIndexesMostPopular() {
+		// Given
+		ZipfianGenerator generator = new ZipfianGenerator(10_000, 0.99);
+		SplittableRandom random = new SplittableRandom(1);
+		int[] counts = new int[10_000];
+
+		// When
+		for (int i = 0; i < 100_000; i++) {
+			counts[generator.next(random)]++;
+		}
+
+		// Then
+		int hottest = 0;
+		for (int i = 0; i < 100; i++) {
+			hottest += counts[i];
+		}
+		assertThat(counts[0]).isGreaterThan(counts[1]);
+		assertThat(hottest).isGreaterThan(40_000);	// Top 1% of accounts take about half the operations
+	}
+
+	@Test
+	public void whenUniform_ThenAllIndexesInRange() {
+		// Given
+		ZipfianGenerator generator = new ZipfianGenerator(10, 0);
+		SplittableRandom random = new SplittableRandom(1);
+
+		// When / Then
+		for (int i = 0; i < 1000; i++) {
+			assertThat(generator.next(random)).isBetween(0, 9);
+		}
+	}
+}